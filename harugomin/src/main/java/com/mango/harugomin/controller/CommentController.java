@@ -40,8 +40,9 @@ public class CommentController {
 
     @ApiOperation("댓글 좋아요")
     @PutMapping(value = "/comments/like")
-    public ResponseEntity likeComment(@RequestParam("commentId") Long commentId, @RequestParam("userId") Long userId) {
-    	return commentService.likeComment(commentId, userId);
+    public ResponseEntity likeComment(@RequestParam("commentId") Long commentId, @RequestParam("userId") Long userId,
+                                      @RequestParam(value = "postId", required = false) Long postId) {
+    	return commentService.likeComment(commentId, userId, postId);
     }
 
     @ApiOperation("댓글 조회 (페이징)")
@@ -49,4 +50,22 @@ public class CommentController {
     public ResponseEntity findComments(@PathVariable("postId") Long postId, @RequestParam("userId") long userId, @RequestParam("pageNum") int pageNum) {
         return commentService.findCommentsByPost(postId, userId, pageNum);
     }
+
+    @ApiOperation("댓글 조회 (다음 페이지 여부 포함)")
+    @GetMapping(value = "/comments/{postId}/slice")
+    public ResponseEntity findCommentsSlice(@PathVariable("postId") Long postId, @RequestParam("userId") long userId, @RequestParam("pageNum") int pageNum) {
+        return commentService.findCommentsByPostSlice(postId, userId, pageNum);
+    }
+
+    @ApiOperation("베스트 댓글 조회")
+    @GetMapping(value = "/comments/{postId}/best")
+    public ResponseEntity findBestComments(@PathVariable("postId") Long postId, @RequestParam("userId") long userId) {
+        return commentService.findBestComments(postId, userId);
+    }
+
+    @ApiOperation("댓글 조회 (커서 페이징)")
+    @GetMapping(value = "/comments/{postId}/scroll")
+    public ResponseEntity findCommentsByCursor(@PathVariable("postId") Long postId, @RequestParam("userId") long userId, @RequestParam(required = false) String cursor) {
+        return commentService.findCommentsByPostByCursor(postId, userId, cursor);
+    }
 }
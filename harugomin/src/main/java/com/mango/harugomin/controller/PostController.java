@@ -2,6 +2,8 @@ package com.mango.harugomin.controller;
 
 import com.google.gson.JsonObject;
 import com.mango.harugomin.dto.PostSaveRequestDto;
+import com.mango.harugomin.service.BlobDownloadService;
+import com.mango.harugomin.service.PostImageService;
 import com.mango.harugomin.service.PostService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -13,9 +15,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @CrossOrigin(origins = "*")
 @Slf4j
@@ -26,6 +28,8 @@ import java.util.Date;
 public class PostController {
 
 	private final PostService postService;
+	private final PostImageService postImageService;
+	private final BlobDownloadService blobDownloadService;
 
 	@ApiOperation("고민글 작성 or 수정")
 	@PostMapping(value = "/posts")
@@ -63,12 +67,30 @@ public class PostController {
 		return postService.getPostsByHashtag(tagName, pageNum);
 	}
 
+	@ApiOperation("(HOME) - 태그별 새 고민글 (커서 페이징)")
+	@GetMapping(value = "/posts/home/{tagName}/scroll")
+	public ResponseEntity homePostingByCursor(@PathVariable("tagName") String tagName, @RequestParam(required = false) String cursor) {
+		return postService.getPostsByHashtagByCursor(tagName, cursor);
+	}
+
+	@ApiOperation("(HOME) - 태그별 새 고민글 (다음 페이지 여부 포함)")
+	@GetMapping(value = "/posts/home/{tagName}/slice")
+	public ResponseEntity homePostingSlice(@PathVariable("tagName") String tagName, @RequestParam int pageNum) {
+		return postService.getPostsByHashtagSlice(tagName, pageNum);
+	}
+
 	@ApiOperation("고민글 통합 검색")
 	@GetMapping(value = "/posts/search/{keyword}")
 	public ResponseEntity searchAllPosts(@PathVariable("keyword") String keyword, @RequestParam int pageNum) {
 		return postService.searchPostsByKeyword(keyword, pageNum);
 	}
 
+	@ApiOperation("고민글 통합 검색 (다음 페이지 여부 포함)")
+	@GetMapping(value = "/posts/search/{keyword}/slice")
+	public ResponseEntity searchAllPostsSlice(@PathVariable("keyword") String keyword, @RequestParam int pageNum) {
+		return postService.searchPostsByKeywordSlice(keyword, pageNum);
+	}
+
 	@ApiOperation("메인 고민글 3개 출력")
 	@GetMapping(value = "/posts/main")
 	public ResponseEntity getMainPosts(Long userId) {
@@ -80,30 +102,26 @@ public class PostController {
 	public String uploadPostImage(@RequestParam MultipartFile files) {
 		try {
 			JsonObject data = new JsonObject();
-			String TARGET_DIR = "/home/ubuntu/hago/files/";
-			String imagePath = FilenameUtils.getBaseName(files.getOriginalFilename());
 
 			if (files.isEmpty()) {
 				data.addProperty("imgPath", "");
 				data.addProperty("status", String.valueOf(HttpStatus.OK));
 				return data.toString();
-			} else {
-				String fileName = files.getOriginalFilename();
-				String fileNameExtension = FilenameUtils.getExtension(fileName).toLowerCase();
-				File targetFile;
-
-				SimpleDateFormat timeFormat = new SimpleDateFormat("yyMMddHHmmss");
-				imagePath += timeFormat.format(new Date()) + "." + fileNameExtension;
-				targetFile = new File(TARGET_DIR + imagePath);
-				files.transferTo(targetFile);
 			}
 
-			data.addProperty("imgPath", imagePath);
-			data.addProperty("status", String.valueOf(HttpStatus.OK));
-
-			return data.toString();
+			String fileNameExtension = FilenameUtils.getExtension(files.getOriginalFilename());
+			return postImageService.store(files.getInputStream(), fileNameExtension);
 		} catch (Exception e) {
+			log.error("Post image upload failed ::: {}", e.getMessage(), e);
 			return HttpStatus.FORBIDDEN.toString();
 		}
 	}
+
+	@ApiOperation("고민글 사진 조회")
+	@RequestMapping(value = "/posts/image/{first}/{second}/{fileName:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+	public void downloadPostImage(@PathVariable("first") String first, @PathVariable("second") String second,
+								  @PathVariable("fileName") String fileName,
+								  HttpServletRequest request, HttpServletResponse response) throws IOException {
+		blobDownloadService.download(first + "/" + second + "/" + fileName, request, response);
+	}
 }
@@ -0,0 +1,54 @@
+package com.mango.harugomin.controller;
+
+import com.mango.harugomin.service.UploadSessionService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+@CrossOrigin(origins = "*")
+@Slf4j
+@Api(tags = "5. Upload")
+@RequiredArgsConstructor
+@RequestMapping("/api/v2")
+@RestController
+public class UploadController {
+
+	private final UploadSessionService uploadSessionService;
+
+	@ApiOperation("이어 올리기 세션 생성 [target : post, profile]")
+	@PostMapping(value = "/uploads")
+	public ResponseEntity createUpload(@RequestParam("target") String target,
+									   @RequestParam(value = "userId", required = false) Long userId,
+									   @RequestParam("fileName") String fileName,
+									   @RequestParam(value = "contentType", required = false) String contentType,
+									   @RequestParam("size") long size,
+									   @RequestParam(value = "chunkSize", defaultValue = "1048576") int chunkSize) throws IOException {
+		return uploadSessionService.create(target, userId, fileName, contentType, size, chunkSize);
+	}
+
+	@ApiOperation("이어 올리기 조각 전송 (Content-MD5 필수)")
+	@PutMapping(value = "/uploads/{uploadId}/chunks/{index}")
+	public ResponseEntity uploadChunk(@PathVariable("uploadId") String uploadId, @PathVariable("index") int index,
+									  @RequestHeader(value = "Content-MD5", required = false) String contentMd5,
+									  HttpServletRequest request) throws IOException {
+		return uploadSessionService.writeChunk(uploadId, index, contentMd5, request.getInputStream());
+	}
+
+	@ApiOperation("이어 올리기 상태 (빠진 조각 목록)")
+	@GetMapping(value = "/uploads/{uploadId}")
+	public ResponseEntity uploadStatus(@PathVariable("uploadId") String uploadId) {
+		return uploadSessionService.status(uploadId);
+	}
+
+	@ApiOperation("이어 올리기 완료")
+	@PostMapping(value = "/uploads/{uploadId}/commit")
+	public ResponseEntity commitUpload(@PathVariable("uploadId") String uploadId) throws IOException {
+		return uploadSessionService.commit(uploadId);
+	}
+}
@@ -112,4 +112,28 @@ public class UserController {
 	public ResponseEntity userHistoryPosts(@PathVariable("userId") Long userId, @RequestParam int pageNum) {
 		return userService.userHistoryPosts(userId, pageNum);
 	}
+
+	@ApiOperation("현재 게시중인 고민글 (다음 페이지 여부 포함)")
+	@GetMapping(value = "/users/posts/{userId}/slice")
+	public ResponseEntity userAnnouncingPostsSlice(@PathVariable("userId") Long userId, @RequestParam int pageNum) {
+		return userService.userAnnouncingPostsSlice(userId, pageNum);
+	}
+
+	@ApiOperation("내 글 보관함 (다음 페이지 여부 포함)")
+	@GetMapping(value = "/users/history/{userId}/slice")
+	public ResponseEntity userHistoryPostsSlice(@PathVariable("userId") Long userId, @RequestParam int pageNum) {
+		return userService.userHistoryPostsSlice(userId, pageNum);
+	}
+
+	@ApiOperation("현재 게시중인 고민글 (커서 페이징)")
+	@GetMapping(value = "/users/posts/{userId}/scroll")
+	public ResponseEntity userAnnouncingPostsByCursor(@PathVariable("userId") Long userId, @RequestParam(required = false) String cursor) {
+		return userService.userAnnouncingPostsByCursor(userId, cursor);
+	}
+
+	@ApiOperation("내 글 보관함 (커서 페이징)")
+	@GetMapping(value = "/users/history/{userId}/scroll")
+	public ResponseEntity userHistoryPostsByCursor(@PathVariable("userId") Long userId, @RequestParam(required = false) String cursor) {
+		return userService.userHistoryPostsByCursor(userId, cursor);
+	}
 }
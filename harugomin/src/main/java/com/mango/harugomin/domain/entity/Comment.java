@@ -14,7 +14,9 @@ import static javax.persistence.GenerationType.*;
 @Getter
 @NoArgsConstructor
 @Entity
-@Table(name = "comment")
+@Table(name = "comment", indexes = {
+        @Index(name = "idx_comment_post_created", columnList = "post_id, created_date, comment_id")
+})
 public class Comment extends BaseTimeEntity {
     @Id
     @GeneratedValue(strategy = IDENTITY)
@@ -42,9 +44,6 @@ public class Comment extends BaseTimeEntity {
     @Column(name = "comment_likes")
     private int commentLikes;
 
-    @Column(name = "is_like")
-    private boolean isLike = false;
-
     @Builder
     public Comment(Long userId, String nickname, String profileImage, Post post, String content, int commentLikes) {
         this.userId = userId;
@@ -53,7 +52,6 @@ public class Comment extends BaseTimeEntity {
         this.post = post;
         this.content = content;
         this.commentLikes = commentLikes;
-        this.isLike = false;
     }
 
     public void update(String content) {
@@ -61,8 +59,4 @@ public class Comment extends BaseTimeEntity {
         this.setModifiedDate(LocalDateTime.now());
     }
 
-    public void userLikeThis(){
-        this.isLike = true;
-    }
-
 }
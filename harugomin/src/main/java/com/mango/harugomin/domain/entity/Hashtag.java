@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 
@@ -16,6 +17,7 @@ import static javax.persistence.GenerationType.*;
 @NoArgsConstructor
 @Getter
 @Entity
+@BatchSize(size = 100)
 @Table(name = "hashtag")
 public class Hashtag {
 
@@ -28,6 +30,7 @@ public class Hashtag {
     private String tagName;
 
     @JsonBackReference
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "hashtag", fetch = EAGER)
     private List<UserHashtag> userHashtags = new ArrayList<>();
 
@@ -5,17 +5,15 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
-import static javax.persistence.FetchType.EAGER;
 import static javax.persistence.FetchType.LAZY;
 
 @NoArgsConstructor
 @Getter
 @Entity
-@Table(name = "history")
+@Table(name = "history", indexes = {
+        @Index(name = "idx_history_user_created", columnList = "user_id, created_date, post_id")
+})
 public class History extends BaseTimeEntity {
     @Id
     @Column(name = "post_id")
@@ -39,25 +37,15 @@ public class History extends BaseTimeEntity {
     @Column(name = "post_image")
     private String postImage;
 
-    @OneToMany(mappedBy = "post", fetch = EAGER)
-    private List<Comment> comments = new ArrayList<>();
+    // 보관 시점의 댓글 목록(CommentSnapshotDto 배열 JSON 을 deflate). 목록 조회는 HistoryResponseDto 로 필요한 열만 읽으므로 가져오지 않는다.
+    @JsonIgnore
+    @Lob
+    @Column(name = "comment_snapshot")
+    private byte[] commentSnapshot;
 
     @Column(name = "hits")
     private int hits;
 
     @Column(name = "comment_num")
     private int commentNum;
-
-    public History(Post post) {
-        this.postId = post.getPostId();
-        this.user = post.getUser();
-        this.title = post.getTitle();
-        this.content = post.getContent();
-        this.tagName = post.getTagName();
-        this.postImage = post.getPostImage();
-        this.comments = post.getComments();
-        this.hits = post.getHits();
-        this.commentNum = post.getCommentNum();
-        this.setModifiedDate(LocalDateTime.now());
-    }
 }
@@ -13,7 +13,7 @@ import static javax.persistence.GenerationType.IDENTITY;
 @Getter
 @NoArgsConstructor
 @Entity
-@Table(name = "liker")
+@Table(name = "liker", uniqueConstraints = @UniqueConstraint(name = "uk_liker_comment_user", columnNames = {"comment_id", "user_id"}))
 public class Liker {
     @Id
     @GeneratedValue(strategy = IDENTITY)
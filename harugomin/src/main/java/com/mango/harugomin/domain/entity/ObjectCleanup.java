@@ -0,0 +1,40 @@
+package com.mango.harugomin.domain.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+import static javax.persistence.GenerationType.IDENTITY;
+
+/**
+ * 교체되거나 주인이 없어진 S3 객체. S3ObjectCleanupService 가 모아서 지운다.
+ */
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "object_cleanup", indexes = {
+        @Index(name = "idx_object_cleanup_next_attempt", columnList = "next_attempt_at, cleanup_id")
+})
+public class ObjectCleanup extends BaseTimeEntity {
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    @Column(name = "cleanup_id")
+    private Long cleanupId;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    public ObjectCleanup(String objectKey) {
+        this.objectKey = objectKey;
+        this.attempts = 0;
+        this.nextAttemptAt = LocalDateTime.now();
+    }
+}
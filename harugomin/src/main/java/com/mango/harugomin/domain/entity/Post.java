@@ -8,8 +8,6 @@ import lombok.NoArgsConstructor;
 import javax.persistence.*;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 import static javax.persistence.FetchType.*;
 import static javax.persistence.GenerationType.*;
@@ -17,7 +15,11 @@ import static javax.persistence.GenerationType.*;
 @NoArgsConstructor
 @Getter
 @Entity
-@Table(name = "post")
+@Table(name = "post", indexes = {
+        @Index(name = "idx_post_created", columnList = "created_date, post_id"),
+        @Index(name = "idx_post_tag_created", columnList = "tag_name, created_date, post_id"),
+        @Index(name = "idx_post_user_created", columnList = "user_id, created_date, post_id")
+})
 public class Post extends BaseTimeEntity {
 
     @Id
@@ -43,10 +45,6 @@ public class Post extends BaseTimeEntity {
     @Column(name = "post_image")
     private String postImage;
 
-    @JsonIgnore
-    @OneToMany(mappedBy = "post", fetch = LAZY, orphanRemoval = true)
-    private List<Comment> comments = new ArrayList<>();
-
     @Column(name = "hits")
     private int hits;
 
@@ -72,10 +70,6 @@ public class Post extends BaseTimeEntity {
         this.setModifiedDate(LocalDateTime.now());
     }
 
-    public void addComment(Comment comment){
-        this.comments.add(comment);
-    }
-
     public long getUserId() {
         return user.getUserId();
     }
@@ -84,12 +78,4 @@ public class Post extends BaseTimeEntity {
 
     public String getUserProfileImage(){return user.getProfileImage();}
 
-    public void upCommentCount(){
-        this.commentNum++;
-    }
-
-    public void downCommentCount(){
-        this.commentNum--;
-    }
-
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.mango.harugomin.dto.UserUpdateRequestDto;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -41,6 +42,7 @@ public class User extends BaseTimeEntity {
     private int ageRange;
 
     @JsonManagedReference
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "user", fetch = EAGER)
     private List<UserHashtag> userHashtags = new ArrayList<>();
 
@@ -3,12 +3,14 @@ package com.mango.harugomin.domain.repository;
 import com.mango.harugomin.domain.entity.Comment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -18,10 +20,32 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     Page<Comment> findAllByPostPostId(Long postId, Pageable pageable);
 
+    Slice<Comment> findSliceByPostPostId(Long postId, Pageable pageable);
+
+    @Query("select c from Comment c where c.post.postId = ?1 order by c.createdDate asc, c.commentId asc")
+    List<Comment> findAllByPostIdFromStart(Long postId, Pageable pageable);
+
+    @Query("select c from Comment c where c.post.postId = ?1 and (c.createdDate > ?2 or (c.createdDate = ?2 and c.commentId > ?3)) " +
+            "order by c.createdDate asc, c.commentId asc")
+    List<Comment> findAllByPostIdAfter(Long postId, LocalDateTime createdDate, Long commentId, Pageable pageable);
+
+    @Query("select c.post.postId from Comment c where c.commentId = ?1")
+    Long findPostIdByCommentId(Long commentId);
+
+    @Query("select c.commentId, c.commentLikes from Comment c where c.post.postId = ?1")
+    List<Object[]> findLikesByPostId(Long postId);
+
+    @Query("select c.post.postId, c from Comment c where c.post.postId in ?1 order by c.createdDate asc, c.commentId asc")
+    List<Object[]> findAllWithPostIdByPostIdIn(List<Long> postIds);
+
 	@Transactional
     @Modifying(clearAutomatically = true)
-    @Query(value = "update comment set comment_likes = comment_likes + ?2 where comment_id = ?1 ", nativeQuery = true)
-    void likeUpdate(Long commentId, int value);
+    @Query(value = "update comment set comment_likes = comment_likes + ?1 where comment_id in ?2 ", nativeQuery = true)
+    void addLikes(int delta, List<Long> commentIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from comment where post_id in ?1 ", nativeQuery = true)
+    int deleteAllByPostIdIn(List<Long> postIds);
 
     @Transactional
     @Modifying(clearAutomatically = true)
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,8 +23,11 @@ public interface HashtagRepository extends JpaRepository<Hashtag, Long> {
 
 	@Transactional
     @Modifying(clearAutomatically = true)
-    @Query(value = "update hashtag set posting_count = posting_count + 1 where tag_id = ?1 ", nativeQuery = true)
-    void countUp(long tagId);
+    @Query(value = "update hashtag set posting_count = posting_count + ?1 where tag_id in ?2 ", nativeQuery = true)
+    void addPostingCount(long delta, List<Long> tagIds);
+
+    @Query("select h.tagId, h.tagName, h.postingCount from Hashtag h")
+    List<Object[]> findAllPostingCounts();
 
     Page<Hashtag> findAll(Pageable pageable);
 }
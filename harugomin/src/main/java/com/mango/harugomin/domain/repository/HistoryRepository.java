@@ -1,15 +1,49 @@
 package com.mango.harugomin.domain.repository;
 
 import com.mango.harugomin.domain.entity.History;
-import org.springframework.data.domain.Page;
+import com.mango.harugomin.dto.HistoryResponseDto;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public interface HistoryRepository extends JpaRepository<History, Long> {
-    Page<History> findAllByUserUserId(Long userId, Pageable pageable);
+
+    // 목록 조회는 댓글 스냅샷(LOB)을 읽지 않도록 필요한 컬럼만 가져온다.
+    @Query("select new com.mango.harugomin.dto.HistoryResponseDto(h.postId, h.user.userId, h.title, h.content, h.tagName, h.postImage, " +
+            "h.hits, h.commentNum, h.createdDate, h.modifiedDate) from History h where h.user.userId = ?1")
+    Slice<HistoryResponseDto> findSliceByUserId(Long userId, Pageable pageable);
+
+    long countByUserUserId(Long userId);
+
+    @Query("select h from History h join fetch h.user where h.createdDate < ?1 order by h.createdDate asc, h.postId asc")
+    List<History> findAllCreatedBefore(LocalDateTime createdDate, Pageable pageable);
+
+    @Query("select new com.mango.harugomin.dto.HistoryResponseDto(h.postId, h.user.userId, h.title, h.content, h.tagName, h.postImage, " +
+            "h.hits, h.commentNum, h.createdDate, h.modifiedDate) from History h " +
+            "where h.user.userId = ?1 and (h.createdDate < ?2 or (h.createdDate = ?2 and h.postId < ?3)) " +
+            "order by h.createdDate desc, h.postId desc")
+    List<HistoryResponseDto> findAllByUserIdBefore(Long userId, LocalDateTime createdDate, Long postId, Pageable pageable);
+
+    // 게시 시간이 지난 고민글을 한 번에 보관함으로 복사한다. 댓글/좋아요 수와 무관하게 문장 하나로 끝난다.
+    @Modifying(clearAutomatically = true)
+    @Query(value = "insert into history (post_id, user_id, title, content, tag_name, post_image, hits, comment_num, created_date, modified_date) " +
+            "select post_id, user_id, title, content, tag_name, post_image, hits, comment_num, now(), now() from post where post_id in ?1 ", nativeQuery = true)
+    int archivePosts(List<Long> postIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "update history set comment_snapshot = ?2 where post_id = ?1 ", nativeQuery = true)
+    int updateCommentSnapshot(Long postId, byte[] commentSnapshot);
+
+	@Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from history where post_id in ?1 ", nativeQuery = true)
+    int deleteAllByPostIdIn(List<Long> postIds);
 
 	@Transactional
     @Modifying(clearAutomatically = true)
@@ -8,25 +8,33 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface LikerRepository extends JpaRepository<Liker, Long> {
 
-    @Query(value = "select count(*) from liker where comment_id = ?1 AND user_id = ?2 ", nativeQuery = true)
-    int findLiker(Long commentId, Long userId);
+    @Modifying
+    @Query(value = "delete from liker where comment_id = ?1 and user_id = ?2 ", nativeQuery = true)
+    int deleteLike(Long commentId, Long userId);
 
-    @Transactional
-    int deleteByComment_Post_PostId(Long postId);
+    /**
+     * (comment_id, user_id) 유니크 키로 중복이면 무시한다. 없는 댓글이거나 이미 눌렀으면 0.
+     */
+    @Modifying
+    @Query(value = "insert ignore into liker (comment_id, user_id) select comment_id, ?2 from comment where comment_id = ?1 ", nativeQuery = true)
+    int insertLike(Long commentId, Long userId);
 
-    Optional<Liker> findByComment_CommentIdAndUserId(Long commentId, Long userId);
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete l from liker l join comment c on l.comment_id = c.comment_id where c.post_id in ?1 ", nativeQuery = true)
+    int deleteAllByPostIdIn(List<Long> postIds);
 
 	@Transactional
     @Modifying(clearAutomatically = true)
     @Query(value = "delete from liker where user_id = ?1 ", nativeQuery = true)
     void deleteAllbyUserId(Long userId);
 
-    @Modifying(clearAutomatically = true)
     @Query(value = "select comment_id from liker where user_id = ?1 ", nativeQuery = true)
     List<Long> findAllByUserId(Long userId);
+
+    @Query(value = "select comment_id from liker where user_id = ?1 and comment_id in ?2 ", nativeQuery = true)
+    List<Long> findLikedCommentIds(Long userId, List<Long> commentIds);
 }
@@ -0,0 +1,27 @@
+package com.mango.harugomin.domain.repository;
+
+import com.mango.harugomin.domain.entity.ObjectCleanup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ObjectCleanupRepository extends JpaRepository<ObjectCleanup, Long> {
+
+    @Query("select o from ObjectCleanup o where o.nextAttemptAt <= ?1 order by o.cleanupId asc")
+    List<ObjectCleanup> findAllDue(LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from object_cleanup where cleanup_id in ?1 ", nativeQuery = true)
+    int deleteAllByCleanupIdIn(List<Long> cleanupIds);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "update object_cleanup set attempts = attempts + 1, next_attempt_at = ?2 where cleanup_id in ?1 ", nativeQuery = true)
+    int postpone(List<Long> cleanupIds, LocalDateTime nextAttemptAt);
+}
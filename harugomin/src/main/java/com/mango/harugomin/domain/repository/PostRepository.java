@@ -3,32 +3,80 @@ package com.mango.harugomin.domain.repository;
 import com.mango.harugomin.domain.entity.Post;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long>{
 
     @Override
     Post save(Post post);
 
+    // 목록 직렬화 시 user 프록시 초기화로 글마다 select 가 나가지 않도록 user 를 함께 조회한다.
+    @EntityGraph(attributePaths = "user")
     Page<Post> findAll(Pageable pageable);
 
-    Page<Post> findAllByTagName(String tagName, Pageable pageable);
+    @EntityGraph(attributePaths = "user")
+    Optional<Post> findWithUserByPostId(Long postId);
+
+    // Slice 조회는 COUNT 쿼리 없이 size + 1 개를 읽어 다음 페이지 여부만 판단한다.
+    @Query("select p from Post p join fetch p.user")
+    Slice<Post> findSliceWithUser(Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    Slice<Post> findSliceByTagName(String tagName, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    Slice<Post> findSliceByUserUserId(Long userId, Pageable pageable);
 
-    @Query(nativeQuery = true, value = " select * from post where content like %?1% OR title like %?1% ",
-    countQuery = "SELECT COUNT(p.post_id) FROM post p WHERE p.title LIKE %?1% OR p.content LIKE %?1% ")
-    Page<Post> searchAllPosts(String keyword, Pageable pageable);
+    @Query("select p from Post p join fetch p.user where p.postId in ?1")
+    List<Post> findAllWithUserByPostIdIn(List<Long> postIds);
 
     @Transactional
     @Modifying(clearAutomatically = true)
-    @Query(value = "update post set hits = hits + 1 where post_id = ?1 ", nativeQuery = true)
-    void postHits(Long postId);
+    @Query(value = "update post set hits = hits + ?1 where post_id in ?2 ", nativeQuery = true)
+    void addHits(int delta, List<Long> postIds);
+
+    @Query("select p from Post p join fetch p.user where p.createdDate < ?1 or (p.createdDate = ?1 and p.postId < ?2) " +
+            "order by p.createdDate desc, p.postId desc")
+    List<Post> findAllBefore(LocalDateTime createdDate, Long postId, Pageable pageable);
+
+    @Query("select p from Post p join fetch p.user where p.tagName = ?1 and (p.createdDate < ?2 or (p.createdDate = ?2 and p.postId < ?3)) " +
+            "order by p.createdDate desc, p.postId desc")
+    List<Post> findAllByTagNameBefore(String tagName, LocalDateTime createdDate, Long postId, Pageable pageable);
+
+    @Query("select p from Post p join fetch p.user u where u.userId = ?1 and (p.createdDate < ?2 or (p.createdDate = ?2 and p.postId < ?3)) " +
+            "order by p.createdDate desc, p.postId desc")
+    List<Post> findAllByUserUserIdBefore(Long userId, LocalDateTime createdDate, Long postId, Pageable pageable);
 
-    Page<Post> findAllByUserUserId(Long userId, Pageable pageable);
+    @Query("select p.postId, p.createdDate from Post p")
+    List<Object[]> findAllCreatedDates();
+
+    @Query("select p.postId, p.createdDate from Post p order by p.createdDate asc, p.postId asc")
+    List<Object[]> findAllCreatedDatesOrderByCreatedDate(Pageable pageable);
+
+    @Query("select p.postId from Post p where p.user.userId = ?1")
+    List<Long> findPostIdsByUserId(Long userId);
+
+    @Query("select p.postId, p.tagName, p.hits from Post p")
+    List<Object[]> findAllRankings();
+
+    @Modifying
+    @Query(value = "update post set comment_num = comment_num + ?2 where post_id = ?1 ", nativeQuery = true)
+    int addCommentNum(Long postId, int delta);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from post where post_id in ?1 ", nativeQuery = true)
+    int deleteAllByPostIdIn(List<Long> postIds);
 
 	@Transactional
     @Modifying(clearAutomatically = true)
@@ -6,10 +6,15 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 public interface UserHashtagRepository extends JpaRepository<UserHashtag, Long> {
 
 	@Transactional
     @Modifying(clearAutomatically = true)
     @Query(value = "delete from user_hashtag where user_id = ?1 ", nativeQuery = true)
     void deleteAllByUserId(Long userId);
+
+    @Query("select uh.hashtag.tagName from UserHashtag uh where uh.user.userId = ?1")
+    List<String> findTagNamesByUserId(Long userId);
 }
@@ -1,9 +1,7 @@
 package com.mango.harugomin.dto;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.mango.harugomin.domain.entity.BaseTimeEntity;
 import com.mango.harugomin.domain.entity.Comment;
-import com.mango.harugomin.domain.entity.Post;
 import lombok.Getter;
 
 import javax.persistence.Lob;
@@ -14,23 +12,36 @@ public class CommentResponseDto extends BaseTimeEntity {
     private Long userId;
     private String nickname;
     private String profileImage;
-    @JsonIgnore
-    private Post post;
     @Lob
     private String content;
     private int commentLikes;
     private boolean isLike;
 
     public CommentResponseDto(Comment entity) {
+        this(entity, entity.getCommentLikes(), false);
+    }
+
+    public CommentResponseDto(Comment entity, int commentLikes, boolean isLike) {
         this.commentId = entity.getCommentId();
         this.userId = entity.getUserId();
         this.nickname = entity.getNickname();
         this.profileImage = entity.getProfileImage();
-        this.post = entity.getPost();
         this.content = entity.getContent();
-        this.commentLikes = entity.getCommentLikes();
+        this.commentLikes = commentLikes;
         this.setCreatedDate(entity.getCreatedDate());
         this.setModifiedDate(entity.getModifiedDate());
-        this.isLike = false;
+        this.isLike = isLike;
+    }
+
+    public CommentResponseDto(CommentResponseDto other, int commentLikes, boolean isLike) {
+        this.commentId = other.commentId;
+        this.userId = other.userId;
+        this.nickname = other.nickname;
+        this.profileImage = other.profileImage;
+        this.content = other.content;
+        this.commentLikes = commentLikes;
+        this.setCreatedDate(other.getCreatedDate());
+        this.setModifiedDate(other.getModifiedDate());
+        this.isLike = isLike;
     }
 }
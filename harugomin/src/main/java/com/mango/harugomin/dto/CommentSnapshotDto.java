@@ -0,0 +1,36 @@
+package com.mango.harugomin.dto;
+
+import com.mango.harugomin.domain.entity.Comment;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 보관함으로 옮겨진 글의 댓글. History.commentSnapshot 에 압축해서 저장한다.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+public class CommentSnapshotDto {
+    private Long commentId;
+    private Long userId;
+    private String nickname;
+    private String profileImage;
+    private String content;
+    private int commentLikes;
+    private LocalDateTime createdDate;
+    private LocalDateTime modifiedDate;
+
+    public CommentSnapshotDto(Comment entity) {
+        this.commentId = entity.getCommentId();
+        this.userId = entity.getUserId();
+        this.nickname = entity.getNickname();
+        this.profileImage = entity.getProfileImage();
+        this.content = entity.getContent();
+        this.commentLikes = entity.getCommentLikes();
+        this.createdDate = entity.getCreatedDate();
+        this.modifiedDate = entity.getModifiedDate();
+    }
+}
@@ -0,0 +1,28 @@
+package com.mango.harugomin.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+@Getter
+public class CursorResponseDto<T> {
+    private List<T> content;
+    private String nextCursor;
+
+    public CursorResponseDto(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * size + 1 개를 조회한 결과로 응답을 만든다. 남는 한 건이 있으면 다음 페이지가 있는 것이다.
+     */
+    public static <T> CursorResponseDto<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= size)
+            return new CursorResponseDto<>(rows, null);
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        return new CursorResponseDto<>(content, cursorOf.apply(content.get(size - 1)).encode());
+    }
+}
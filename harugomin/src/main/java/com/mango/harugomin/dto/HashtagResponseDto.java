@@ -0,0 +1,16 @@
+package com.mango.harugomin.dto;
+
+import lombok.Getter;
+
+@Getter
+public class HashtagResponseDto {
+    private Long tagId;
+    private String tagName;
+    private Long postingCount;
+
+    public HashtagResponseDto(Long tagId, String tagName, Long postingCount) {
+        this.tagId = tagId;
+        this.tagName = tagName;
+        this.postingCount = postingCount;
+    }
+}
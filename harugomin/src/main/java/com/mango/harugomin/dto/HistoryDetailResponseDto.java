@@ -0,0 +1,21 @@
+package com.mango.harugomin.dto;
+
+import com.mango.harugomin.domain.entity.History;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@NoArgsConstructor
+public class HistoryDetailResponseDto extends HistoryResponseDto {
+    private List<CommentSnapshotDto> comments = new ArrayList<>();
+
+    public HistoryDetailResponseDto(History entity, List<CommentSnapshotDto> comments) {
+        super(entity);
+        this.comments = comments;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mango.harugomin.dto;
+
+import com.mango.harugomin.domain.entity.History;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+@NoArgsConstructor
+public class HistoryResponseDto {
+    private Long postId;
+    private Long userId;
+    private String title;
+    private String content;
+    private String tagName;
+    private String postImage;
+    private int hits;
+    private int commentNum;
+    private LocalDateTime createdDate;
+    private LocalDateTime modifiedDate;
+
+    public HistoryResponseDto(Long postId, Long userId, String title, String content, String tagName, String postImage,
+                              int hits, int commentNum, LocalDateTime createdDate, LocalDateTime modifiedDate) {
+        this.postId = postId;
+        this.userId = userId;
+        this.title = title;
+        this.content = content;
+        this.tagName = tagName;
+        this.postImage = postImage;
+        this.hits = hits;
+        this.commentNum = commentNum;
+        this.createdDate = createdDate;
+        this.modifiedDate = modifiedDate;
+    }
+
+    public HistoryResponseDto(HistoryResponseDto other) {
+        this(other.postId, other.userId, other.title, other.content, other.tagName, other.postImage,
+            other.hits, other.commentNum, other.createdDate, other.modifiedDate);
+    }
+
+    public HistoryResponseDto(History entity) {
+        this.postId = entity.getPostId();
+        this.userId = entity.getUser().getUserId();
+        this.title = entity.getTitle();
+        this.content = entity.getContent();
+        this.tagName = entity.getTagName();
+        this.postImage = entity.getPostImage();
+        this.hits = entity.getHits();
+        this.commentNum = entity.getCommentNum();
+        this.createdDate = entity.getCreatedDate();
+        this.modifiedDate = entity.getModifiedDate();
+    }
+}
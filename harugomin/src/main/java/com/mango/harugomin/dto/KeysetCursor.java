@@ -0,0 +1,48 @@
+package com.mango.harugomin.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * (created_date, id) 기준 커서. 클라이언트에는 base64 문자열로만 노출한다.
+ */
+@Getter
+public class KeysetCursor {
+    private static final String DELIMITER = "_";
+    private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private final LocalDateTime createdDate;
+    private final Long id;
+
+    public KeysetCursor(LocalDateTime createdDate, Long id) {
+        this.createdDate = createdDate;
+        this.id = id;
+    }
+
+    /**
+     * 내림차순 조회의 첫 페이지용 커서
+     */
+    public static KeysetCursor first() {
+        return new KeysetCursor(MAX_DATE, Long.MAX_VALUE);
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return first();
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = value.lastIndexOf(DELIMITER);
+            return new KeysetCursor(LocalDateTime.parse(value.substring(0, index)), Long.parseLong(value.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다. : " + cursor);
+        }
+    }
+
+    public String encode() {
+        String value = createdDate.toString() + DELIMITER + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -41,4 +41,19 @@ public class PostResponseDto {
         this.userProfileImage = entity.getUserProfileImage();
         this.commentNum = entity.getCommentNum();
     }
+
+    public PostResponseDto(PostResponseDto other) {
+        this.postId = other.postId;
+        this.title = other.title;
+        this.content = other.content;
+        this.tagName = other.tagName;
+        this.postImage = other.postImage;
+        this.hits = other.hits;
+        this.createdDate = other.createdDate;
+        this.modifiedDate = other.modifiedDate;
+        this.userId = other.userId;
+        this.userNickname = other.userNickname;
+        this.userProfileImage = other.userProfileImage;
+        this.commentNum = other.commentNum;
+    }
 }
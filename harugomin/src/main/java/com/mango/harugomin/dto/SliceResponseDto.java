@@ -0,0 +1,21 @@
+package com.mango.harugomin.dto;
+
+import lombok.Getter;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+@Getter
+public class SliceResponseDto<T> {
+    private List<T> content;
+    private boolean hasNext;
+
+    public SliceResponseDto(List<T> content, boolean hasNext) {
+        this.content = content;
+        this.hasNext = hasNext;
+    }
+
+    public SliceResponseDto(Slice<T> slice) {
+        this(slice.getContent(), slice.hasNext());
+    }
+}
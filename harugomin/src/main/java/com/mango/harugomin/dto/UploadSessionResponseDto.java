@@ -0,0 +1,22 @@
+package com.mango.harugomin.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class UploadSessionResponseDto {
+    private String uploadId;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> missingChunks;
+
+    public UploadSessionResponseDto(String uploadId, long size, int chunkSize, int chunkCount, List<Integer> missingChunks) {
+        this.uploadId = uploadId;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+        this.missingChunks = missingChunks;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mango.harugomin.service;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * 메모리 캐시 변경을 트랜잭션 커밋 뒤로 미룬다. 커밋 전에 캐시를 고치면 그 사이에 DB 를 읽은 요청이
+ * 이전 값을 다시 캐시에 넣을 수 있고, 롤백되면 캐시만 바뀐 채 남는다. 트랜잭션 밖이면 바로 실행한다.
+ */
+public final class AfterCommit {
+
+	private AfterCommit() {
+	}
+
+	/**
+	 * 트랜잭션이 롤백되면 실행한다. 트랜잭션 밖이면 아무 것도 하지 않는다.
+	 */
+	public static void onRollback(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_ROLLED_BACK)
+					action.run();
+			}
+		});
+	}
+
+	/**
+	 * 트랜잭션이 끝나면 커밋 여부를 넘겨 실행한다. run 으로 등록한 커밋 뒤 작업이 모두 끝난 다음에 불린다.
+	 * 트랜잭션 밖이면 커밋된 것으로 보고 바로 실행한다.
+	 */
+	public static void onCompletion(Consumer<Boolean> action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.accept(true);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				action.accept(status == STATUS_COMMITTED);
+			}
+		});
+	}
+
+	public static void run(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+}
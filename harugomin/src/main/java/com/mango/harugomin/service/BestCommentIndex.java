@@ -0,0 +1,246 @@
+package com.mango.harugomin.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 고민글별 좋아요 많은 댓글 top-K.
+ * 글마다 댓글별 좋아요 수와 상위 K 개만 담은 TreeSet 을 두고, 좋아요 토글과 댓글 삭제는 TreeSet 만 O(log K) 로 고친다.
+ * 상위 댓글의 좋아요가 줄어 밖에 더 큰 댓글이 있을 수 있게 되면 다음 조회 때 메모리의 좋아요 수로 다시 고른다.
+ * 처음 조회할 때 comment_id, comment_likes 만 정렬 없이 읽어 채운다. 글이 maxPosts 를 넘으면 가장 오래 조회되지 않은 글부터 버린다.
+ * 변경은 트랜잭션 커밋 뒤에 반영하고, 조회 중 변경 여부는 글별 버전으로 판단한다.
+ */
+@Component
+public class BestCommentIndex {
+
+	private static final int VERSION_SLOTS = 1024;
+
+	private static final Comparator<Ranked> ORDER = Comparator.comparingInt(Ranked::getLikes).reversed()
+		.thenComparing(Ranked::getCommentId);
+
+	private final int size;
+	private final int maxPosts;
+	private final LinkedHashMap<Long, Board> boards = new LinkedHashMap<>(256, 0.75f, true);
+	// 글별 버전. 글 id 를 해시한 칸을 쓰므로 같은 칸을 쓰는 다른 글의 변경도 put 을 막지만 잘못된 값이 들어가지는 않는다.
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+	// 커밋을 기다리는 변경 수. 0 이 아니면 그 칸의 put 을 막는다.
+	private final AtomicIntegerArray changing = new AtomicIntegerArray(VERSION_SLOTS);
+
+	public BestCommentIndex(@Value("${hago.best-comments.size:3}") int size,
+							@Value("${hago.best-comments.max-posts:5000}") int maxPosts) {
+		this.size = size;
+		this.maxPosts = maxPosts;
+	}
+
+	/**
+	 * 좋아요가 한 개 이상인 상위 댓글. 글이 아직 올라와 있지 않으면 null.
+	 */
+	public synchronized List<Ranked> top(Long postId) {
+		Board board = boards.get(postId);
+		if (board == null)
+			return null;
+		if (board.stale)
+			rebuild(board);
+		return liked(board);
+	}
+
+	/**
+	 * DB 조회 전에 받아 둔 글의 버전. 조회하는 사이에 그 글의 좋아요나 댓글이 바뀌었으면 put 이 무시된다.
+	 */
+	public long version(Long postId) {
+		return versions.get(slot(postId));
+	}
+
+	public synchronized void put(Long postId, Map<Long, Integer> likes, long loadedVersion) {
+		int slot = slot(postId);
+		if (loadedVersion != versions.get(slot) || changing.get(slot) > 0)
+			return;
+		Board board = new Board(new HashMap<>(likes));
+		rebuild(board);
+		boards.put(postId, board);
+
+		Iterator<Map.Entry<Long, Board>> iterator = boards.entrySet().iterator();
+		while (boards.size() > maxPosts && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * 트랜잭션 안에서 부르면 커밋 뒤에 반영한다. 아래 변경 메서드도 모두 같다.
+	 */
+	public void add(Long postId, Long commentId) {
+		change(postId, () -> applyAdd(postId, commentId));
+	}
+
+	private synchronized void applyAdd(Long postId, Long commentId) {
+		versions.incrementAndGet(slot(postId));
+		Board board = boards.get(postId);
+		if (board == null || board.likes.containsKey(commentId))
+			return;
+		board.likes.put(commentId, 0);
+		offer(board, new Ranked(commentId, 0));
+	}
+
+	public void like(Long postId, Long commentId, int delta) {
+		change(postId, () -> applyLike(postId, commentId, delta));
+	}
+
+	private synchronized void applyLike(Long postId, Long commentId, int delta) {
+		versions.incrementAndGet(slot(postId));
+		Board board = boards.get(postId);
+		if (board == null)
+			return;
+		Integer before = board.likes.get(commentId);
+		if (before == null)
+			return;
+		int after = before + delta;
+		board.likes.put(commentId, after);
+
+		boolean wasTop = board.top.remove(new Ranked(commentId, before));
+		Ranked ranked = new Ranked(commentId, after);
+		if (!wasTop) {
+			offer(board, ranked);
+		} else if (delta >= 0 || board.likes.size() <= size) {
+			board.top.add(ranked);
+		} else {
+			// 밖에 있던 댓글이 더 클 수 있다. 자리는 지키되 다음 조회 때 다시 고른다.
+			board.top.add(ranked);
+			board.stale = true;
+		}
+	}
+
+	public void remove(Long postId, Long commentId) {
+		change(postId, () -> applyRemove(postId, commentId));
+	}
+
+	private synchronized void applyRemove(Long postId, Long commentId) {
+		versions.incrementAndGet(slot(postId));
+		Board board = boards.get(postId);
+		if (board == null)
+			return;
+		Integer likes = board.likes.remove(commentId);
+		if (likes != null && board.top.remove(new Ranked(commentId, likes)) && board.likes.size() >= size)
+			board.stale = true;
+	}
+
+	public void evict(Long postId) {
+		evictAll(Collections.singletonList(postId));
+	}
+
+	public void evictAll(Collection<Long> postIds) {
+		AfterCommit.run(() -> removeAll(postIds));
+	}
+
+	private synchronized void removeAll(Collection<Long> postIds) {
+		for (Long postId : postIds) {
+			versions.incrementAndGet(slot(postId));
+			boards.remove(postId);
+		}
+	}
+
+	public void clear() {
+		AfterCommit.run(this::removeEverything);
+	}
+
+	private synchronized void removeEverything() {
+		for (int i = 0; i < VERSION_SLOTS; i++) {
+			versions.incrementAndGet(i);
+		}
+		boards.clear();
+	}
+
+	/**
+	 * 조회하는 사이에 그 글이 바뀌어 인덱스에 올리지 못했을 때 조회한 값으로 바로 고른다.
+	 */
+	public List<Ranked> rank(Map<Long, Integer> likes) {
+		Board board = new Board(likes);
+		rebuild(board);
+		return liked(board);
+	}
+
+	public synchronized int size() {
+		return boards.size();
+	}
+
+	private void offer(Board board, Ranked ranked) {
+		if (board.top.size() < size) {
+			board.top.add(ranked);
+		} else if (ORDER.compare(ranked, board.top.last()) < 0) {
+			board.top.pollLast();
+			board.top.add(ranked);
+		}
+	}
+
+	private void rebuild(Board board) {
+		board.top.clear();
+		for (Map.Entry<Long, Integer> entry : board.likes.entrySet()) {
+			offer(board, new Ranked(entry.getKey(), entry.getValue()));
+		}
+		board.stale = false;
+	}
+
+	private static List<Ranked> liked(Board board) {
+		List<Ranked> result = new ArrayList<>(board.top.size());
+		for (Ranked ranked : board.top) {
+			if (ranked.likes > 0)
+				result.add(ranked);
+		}
+		return result;
+	}
+
+	/**
+	 * 시작할 때 버전을 올리고 트랜잭션이 끝날 때까지 그 글의 put 을 막는다. 커밋되면 apply 를 실행한다.
+	 * 그 사이에 좋아요 수를 읽은 조회는 CommentLikeCounter 를 통해 이 변경을 이미 담고 있을 수 있으므로 인덱스에 올리지 않는다.
+	 */
+	private void change(Long postId, Runnable apply) {
+		int slot = slot(postId);
+		changing.incrementAndGet(slot);
+		versions.incrementAndGet(slot);
+		AfterCommit.onCompletion(committed -> {
+			try {
+				if (committed)
+					apply.run();
+			} finally {
+				versions.incrementAndGet(slot);
+				changing.decrementAndGet(slot);
+			}
+		});
+	}
+
+	private static int slot(Long postId) {
+		return (Long.hashCode(postId) & 0x7fffffff) % VERSION_SLOTS;
+	}
+
+	public static class Ranked {
+		private final Long commentId;
+		private final int likes;
+
+		private Ranked(Long commentId, int likes) {
+			this.commentId = commentId;
+			this.likes = likes;
+		}
+
+		public Long getCommentId() {
+			return commentId;
+		}
+
+		public int getLikes() {
+			return likes;
+		}
+	}
+
+	private static class Board {
+		private final Map<Long, Integer> likes;
+		private final TreeSet<Ranked> top = new TreeSet<>(ORDER);
+		private boolean stale;
+
+		private Board(Map<Long, Integer> likes) {
+			this.likes = likes;
+		}
+	}
+}
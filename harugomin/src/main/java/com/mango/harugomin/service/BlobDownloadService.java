@@ -0,0 +1,164 @@
+package com.mango.harugomin.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LocalBlobStore 의 파일을 그대로 내려준다. 파일 이름이 내용 해시이므로 ETag 도 해시를 쓰고 한 번 받은 파일은 다시 받지 않게 한다.
+ * Tomcat 이 sendfile 을 지원하면 본문은 Tomcat 이 커널에서 바로 보내고, 아니면 FileChannel.transferTo 로 보낸다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class BlobDownloadService {
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+	private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+	static final long[] WHOLE = new long[0];
+
+	private final LocalBlobStore localBlobStore;
+
+	public void download(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (!localBlobStore.exists(key)) {
+			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		Path path = localBlobStore.resolve(key);
+		String etag = "\"" + LocalBlobStore.hashOf(key) + "\"";
+		long size = Files.size(path);
+
+		response.setHeader(HttpHeaders.ETAG, etag);
+		response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		long start = 0;
+		long end = size - 1;
+		String range = request.getHeader(HttpHeaders.RANGE);
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		long[] bounds = range != null && (ifRange == null || ifRange.equals(etag)) ? parseRange(range, size) : WHOLE;
+		if (bounds == null) {
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+			return;
+		}
+		if (bounds != WHOLE) {
+			start = bounds[0];
+			end = bounds[1];
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+		} else {
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+
+		long length = end - start + 1;
+		response.setContentType(contentType(path));
+		response.setContentLengthLong(length);
+		if ("HEAD".equals(request.getMethod()) || length == 0)
+			return;
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, end + 1);
+			return;
+		}
+
+		try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			while (position <= end) {
+				long sent = source.transferTo(position, end + 1 - position, target);
+				if (sent <= 0)
+					break;
+				position += sent;
+			}
+		}
+	}
+
+	private boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null)
+			return false;
+		for (String candidate : ifNoneMatch.split(",")) {
+			String value = candidate.trim();
+			if (value.startsWith("W/"))
+				value = value.substring(2);
+			if (value.equals("*") || value.equals(etag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 단일 bytes 범위만 지원한다. 여러 범위, 다른 단위, 형식이 틀린 Range 는 RFC 7233 에 따라 무시하고 전체를 보내도록 WHOLE 을,
+	 * 시작 위치가 파일 끝을 넘는 범위는 416 으로 답하도록 null 을 돌려준다.
+	 */
+	static long[] parseRange(String range, long size) {
+		Matcher matcher = RANGE_PATTERN.matcher(range.trim());
+		if (!matcher.matches())
+			return WHOLE;
+		String first = matcher.group(1);
+		String last = matcher.group(2);
+		try {
+			if (first.isEmpty()) {
+				if (last.isEmpty())
+					return WHOLE;
+				long suffix = Long.parseLong(last);
+				if (suffix == 0 || size == 0)
+					return WHOLE;
+				return new long[]{Math.max(0, size - suffix), size - 1};
+			}
+			long start = Long.parseLong(first);
+			if (!last.isEmpty() && Long.parseLong(last) < start)
+				return WHOLE;
+			if (start >= size)
+				return null;
+			long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+			return new long[]{start, end};
+		} catch (NumberFormatException e) {
+			return WHOLE;
+		}
+	}
+
+	private String contentType(Path path) {
+		String name = path.getFileName().toString();
+		String extension = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : "";
+		switch (extension) {
+			case "jpg":
+			case "jpeg":
+				return "image/jpeg";
+			case "png":
+				return "image/png";
+			case "gif":
+				return "image/gif";
+			case "webp":
+				return "image/webp";
+			case "heic":
+				return "image/heic";
+			default:
+				return "application/octet-stream";
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.repository.CommentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 댓글 좋아요 수 증감을 메모리에 모아 두고 주기적으로 묶어서 comment.comment_likes 에 반영한다.
+ * 인기 댓글에 좋아요가 몰려도 요청마다 같은 행을 잠그지 않는다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class CommentLikeCounter {
+
+	private final CommentRepository commentRepository;
+	private final DeltaBuffer likes = new DeltaBuffer();
+
+	/**
+	 * 트랜잭션 안에서 부르면 커밋 뒤에 더한다. 롤백된 좋아요 토글이 comment_likes 에 남지 않는다.
+	 */
+	public void add(Long commentId, int delta) {
+		AfterCommit.run(() -> likes.add(commentId, delta));
+	}
+
+	/**
+	 * 아직 DB 에 반영되지 않은 좋아요 수
+	 */
+	public int pending(Long commentId) {
+		return (int) likes.pending(commentId);
+	}
+
+	/**
+	 * 보관함으로 옮기거나 삭제할 댓글의 미반영 좋아요 수를 꺼낸다. 트랜잭션이 롤백되면 다시 넣는다.
+	 */
+	public Map<Long, Long> take(Collection<Long> commentIds) {
+		Map<Long, Long> taken = new HashMap<>();
+		for (Long commentId : commentIds) {
+			long delta = likes.drain(commentId);
+			if (delta != 0)
+				taken.put(commentId, delta);
+		}
+		if (!taken.isEmpty())
+			AfterCommit.onRollback(() -> likes.restore(taken));
+		return taken;
+	}
+
+	@Scheduled(fixedDelayString = "${hago.comment-likes.flush-interval-ms:5000}")
+	public void flush() {
+		Map<Long, Long> drained = likes.drain();
+		if (drained.isEmpty())
+			return;
+
+		Map<Long, Long> failed = new HashMap<>();
+		for (Map.Entry<Long, List<Long>> group : DeltaBuffer.groupByDelta(drained).entrySet()) {
+			try {
+				commentRepository.addLikes(group.getKey().intValue(), group.getValue());
+			} catch (Exception e) {
+				log.error("Comment likes flush error ::: {}", e.getMessage());
+				for (Long commentId : group.getValue()) {
+					failed.put(commentId, group.getKey());
+				}
+			}
+		}
+		likes.restore(failed);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+	}
+}
@@ -0,0 +1,254 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.dto.CommentResponseDto;
+import com.mango.harugomin.dto.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 살아 있는 고민글마다 앞쪽 댓글 몇 페이지를 (created_date, comment_id) 오름차순으로 캐시한다.
+ * 댓글 작성, 수정, 삭제, 좋아요는 커밋 뒤에 캐시된 목록에 반영하고 글이 보관함으로 옮겨지면 버린다.
+ * 캐시된 댓글의 좋아요 수는 아직 DB 에 반영되지 않은 증감까지 포함한 값이다.
+ */
+@Component
+public class CommentPageCache {
+
+	private static final int VERSION_SLOTS = 1024;
+
+	private final int capacity;
+	private final int maxPosts;
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+	// 글별 버전. 글 id 를 해시한 칸을 쓰므로 같은 칸을 쓰는 다른 글의 변경도 put 을 막지만 잘못된 값이 들어가지는 않는다.
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+	// 커밋을 기다리는 변경 수. 0 이 아니면 그 칸의 put 을 막는다.
+	private final AtomicIntegerArray changing = new AtomicIntegerArray(VERSION_SLOTS);
+
+	public CommentPageCache(@Value("${hago.comment-cache.pages:3}") int pages,
+							@Value("${hago.comment-cache.max-posts:1000}") int maxPosts) {
+		// 마지막 페이지의 다음 페이지 여부를 캐시만으로 알 수 있도록 한 건 더 둔다.
+		this.capacity = pages * 15 + 1;
+		this.maxPosts = maxPosts;
+	}
+
+	/**
+	 * 글마다 캐시하는 댓글 수
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	public synchronized boolean contains(Long postId) {
+		return entries.containsKey(postId);
+	}
+
+	/**
+	 * after 다음부터 limit 개. 캐시된 범위만으로 답할 수 없으면 null.
+	 */
+	public synchronized List<CommentResponseDto> get(Long postId, KeysetCursor after, int limit) {
+		Entry entry = entries.get(postId);
+		if (entry == null)
+			return null;
+		int from = 0;
+		if (after != null) {
+			from = entry.rows.size();
+			for (int i = 0; i < entry.rows.size(); i++) {
+				if (compare(entry.rows.get(i), after.getCreatedDate(), after.getId()) > 0) {
+					from = i;
+					break;
+				}
+			}
+		}
+		return slice(entry, from, limit);
+	}
+
+	public synchronized List<CommentResponseDto> get(Long postId, int offset, int limit) {
+		Entry entry = entries.get(postId);
+		if (entry == null)
+			return null;
+		return slice(entry, offset, limit);
+	}
+
+	/**
+	 * DB 조회 전에 받아 둔 글의 버전. 조회하는 사이에 그 글의 댓글이 바뀌었으면 put 이 무시된다.
+	 */
+	public long version(Long postId) {
+		return versions.get(slot(postId));
+	}
+
+	/**
+	 * 글의 첫 댓글부터 최대 capacity + 1 개를 조회한 결과를 넣는다. 남는 한 건은 뒤에 댓글이 더 있다는 표시로만 쓴다.
+	 */
+	public synchronized void put(Long postId, List<CommentResponseDto> rows, long loadedVersion) {
+		int slot = slot(postId);
+		if (loadedVersion != versions.get(slot) || changing.get(slot) > 0)
+			return;
+		boolean hasMore = rows.size() > capacity;
+		entries.put(postId, new Entry(new ArrayList<>(hasMore ? rows.subList(0, capacity) : rows), hasMore));
+
+		Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxPosts && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * 새 댓글은 항상 마지막이므로 뒤에 붙인다. 캐시 범위를 넘어서면 붙이지 않고 뒤에 더 있다고만 표시한다.
+	 * 트랜잭션 안에서 부르면 커밋 뒤에 반영한다. 아래 변경 메서드도 모두 같다.
+	 */
+	public void append(Long postId, CommentResponseDto comment) {
+		change(postId, () -> applyAppend(postId, comment));
+	}
+
+	private synchronized void applyAppend(Long postId, CommentResponseDto comment) {
+		versions.incrementAndGet(slot(postId));
+		Entry entry = entries.get(postId);
+		if (entry == null || entry.hasMore || indexOf(entry, comment.getCommentId()) >= 0)
+			return;
+		if (entry.rows.size() >= capacity) {
+			entry.hasMore = true;
+			return;
+		}
+		int index = entry.rows.size();
+		while (index > 0 && compare(entry.rows.get(index - 1), comment.getCreatedDate(), comment.getCommentId()) > 0) {
+			index--;
+		}
+		entry.rows.add(index, comment);
+	}
+
+	/**
+	 * 수정된 댓글로 바꾼다. 좋아요 수는 캐시된 값을 유지한다.
+	 */
+	public void replace(Long postId, CommentResponseDto comment) {
+		change(postId, () -> applyReplace(postId, comment));
+	}
+
+	private synchronized void applyReplace(Long postId, CommentResponseDto comment) {
+		versions.incrementAndGet(slot(postId));
+		Entry entry = entries.get(postId);
+		if (entry == null)
+			return;
+		int index = indexOf(entry, comment.getCommentId());
+		if (index >= 0)
+			entry.rows.set(index, new CommentResponseDto(comment, entry.rows.get(index).getCommentLikes(), false));
+	}
+
+	public void remove(Long postId, Long commentId) {
+		change(postId, () -> applyRemove(postId, commentId));
+	}
+
+	private synchronized void applyRemove(Long postId, Long commentId) {
+		versions.incrementAndGet(slot(postId));
+		Entry entry = entries.get(postId);
+		if (entry == null)
+			return;
+		int index = indexOf(entry, commentId);
+		if (index >= 0)
+			entry.rows.remove(index);
+	}
+
+	public void like(Long postId, Long commentId, int delta) {
+		change(postId, () -> applyLike(postId, commentId, delta));
+	}
+
+	private synchronized void applyLike(Long postId, Long commentId, int delta) {
+		versions.incrementAndGet(slot(postId));
+		Entry entry = entries.get(postId);
+		int index = entry == null ? -1 : indexOf(entry, commentId);
+		if (index < 0)
+			return;
+		CommentResponseDto row = entry.rows.get(index);
+		entry.rows.set(index, new CommentResponseDto(row, row.getCommentLikes() + delta, false));
+	}
+
+	public void evict(Long postId) {
+		evictAll(Collections.singletonList(postId));
+	}
+
+	public void evictAll(Collection<Long> postIds) {
+		AfterCommit.run(() -> removeAll(postIds));
+	}
+
+	private synchronized void removeAll(Collection<Long> postIds) {
+		for (Long postId : postIds) {
+			versions.incrementAndGet(slot(postId));
+			entries.remove(postId);
+		}
+	}
+
+	public void clear() {
+		AfterCommit.run(this::removeEverything);
+	}
+
+	private synchronized void removeEverything() {
+		for (int i = 0; i < VERSION_SLOTS; i++) {
+			versions.incrementAndGet(i);
+		}
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private List<CommentResponseDto> slice(Entry entry, int from, int limit) {
+		int to = from + limit;
+		if (to > entry.rows.size()) {
+			if (entry.hasMore)
+				return null;
+			to = entry.rows.size();
+		}
+		return new ArrayList<>(entry.rows.subList(Math.min(from, to), to));
+	}
+
+	/**
+	 * 시작할 때 버전을 올리고 트랜잭션이 끝날 때까지 그 글의 put 을 막는다. 커밋되면 apply 를 실행한다.
+	 * 그 사이에 DB 와 CommentLikeCounter 를 읽은 조회는 이 변경을 이미 담고 있을 수 있으므로 캐시에 넣지 않는다.
+	 */
+	private void change(Long postId, Runnable apply) {
+		int slot = slot(postId);
+		changing.incrementAndGet(slot);
+		versions.incrementAndGet(slot);
+		AfterCommit.onCompletion(committed -> {
+			try {
+				if (committed)
+					apply.run();
+			} finally {
+				versions.incrementAndGet(slot);
+				changing.decrementAndGet(slot);
+			}
+		});
+	}
+
+	private static int slot(Long postId) {
+		return (Long.hashCode(postId) & 0x7fffffff) % VERSION_SLOTS;
+	}
+
+	private static int indexOf(Entry entry, Long commentId) {
+		for (int i = 0; i < entry.rows.size(); i++) {
+			if (entry.rows.get(i).getCommentId().equals(commentId))
+				return i;
+		}
+		return -1;
+	}
+
+	private static int compare(CommentResponseDto row, LocalDateTime createdDate, Long commentId) {
+		int result = row.getCreatedDate().compareTo(createdDate);
+		return result != 0 ? result : row.getCommentId().compareTo(commentId);
+	}
+
+	private static class Entry {
+		private final List<CommentResponseDto> rows;
+		private boolean hasMore;
+
+		private Entry(List<CommentResponseDto> rows, boolean hasMore) {
+			this.rows = rows;
+			this.hasMore = hasMore;
+		}
+	}
+}
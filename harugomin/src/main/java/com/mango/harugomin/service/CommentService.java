@@ -1,7 +1,6 @@
 package com.mango.harugomin.service;
 
 import com.mango.harugomin.domain.entity.Comment;
-import com.mango.harugomin.domain.entity.Liker;
 import com.mango.harugomin.domain.entity.Post;
 import com.mango.harugomin.domain.repository.CommentRepository;
 import com.mango.harugomin.domain.repository.LikerRepository;
@@ -9,18 +8,29 @@ import com.mango.harugomin.domain.repository.PostRepository;
 import com.mango.harugomin.dto.CommentResponseDto;
 import com.mango.harugomin.dto.CommentSaveRequestDto;
 import com.mango.harugomin.dto.CommentUpdateRequestDto;
+import com.mango.harugomin.dto.CursorResponseDto;
+import com.mango.harugomin.dto.KeysetCursor;
+import com.mango.harugomin.dto.SliceResponseDto;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RequiredArgsConstructor
 @Service
@@ -28,6 +38,11 @@ public class CommentService {
 	private final CommentRepository commentRepository;
 	private final PostRepository postRepository;
 	private final LikerRepository likerRepository;
+	private final PostDetailCache postDetailCache;
+	private final CommentLikeCounter commentLikeCounter;
+	private final LikedCommentCache likedCommentCache;
+	private final CommentPageCache commentPageCache;
+	private final BestCommentIndex bestCommentIndex;
 
 	public Optional<Comment> findById(Long commentId) {
 		return commentRepository.findById(commentId);
@@ -44,9 +59,12 @@ public class CommentService {
 		return new ResponseEntity(responseDto, HttpStatus.OK);
 	}
 
+	/**
+	 * 글은 참조만 걸고 읽지 않는다. 댓글 수는 comment_num 을 바로 증감해 댓글이 많은 글이어도 쓰기 비용이 같다.
+	 */
 	@Transactional
 	public Comment save(CommentSaveRequestDto requestDto) {
-		Post post = postRepository.findById(requestDto.getPostId()).get();
+		Post post = postRepository.getOne(requestDto.getPostId());
 		Comment comment = commentRepository.save(Comment.builder()
 			.userId(requestDto.getUserId())
 			.nickname(requestDto.getNickname())
@@ -56,9 +74,14 @@ public class CommentService {
 			.commentLikes(0)
 			.build()
 		);
-		post.upCommentCount();
-		post.addComment(comment);
-		commentRepository.save(comment);
+		postRepository.addCommentNum(requestDto.getPostId(), 1);
+		postDetailCache.evict(requestDto.getPostId());
+
+		// DB 의 created_date 는 초 단위로 저장되므로 캐시에 넣을 값도 맞춘다. 그래야 캐시에서 만든 커서로 DB 를 이어 읽을 수 있다.
+		CommentResponseDto cached = new CommentResponseDto(comment);
+		cached.setCreatedDate(comment.getCreatedDate().truncatedTo(ChronoUnit.SECONDS));
+		commentPageCache.append(requestDto.getPostId(), cached);
+		bestCommentIndex.add(requestDto.getPostId(), comment.getCommentId());
 
 		return comment;
 	}
@@ -67,10 +90,8 @@ public class CommentService {
 	public ResponseEntity updateComment(Long commentId, CommentUpdateRequestDto requestDto) {
 		try {
 			Comment comment = commentRepository.findById(commentId).get();
-			Post post = postRepository.findById(requestDto.getPostId()).get();
-			post.getComments().remove(comment);
 			comment.update(requestDto.getContent());
-			post.getComments().add(comment);
+			commentPageCache.replace(comment.getPost().getPostId(), new CommentResponseDto(comment));
 		} catch (Exception e) {
 			return new ResponseEntity(HttpStatus.BAD_REQUEST);
 		}
@@ -81,10 +102,13 @@ public class CommentService {
 	public ResponseEntity deleteComment(Long commentId) {
 		try {
 			Comment comment = commentRepository.findById(commentId).get();
-			Post post = postRepository.findById(comment.getPost().getPostId()).get();
-			post.getComments().remove(comment);
-			post.downCommentCount();
+			Long postId = comment.getPost().getPostId();
 			commentRepository.delete(comment);
+			postRepository.addCommentNum(postId, -1);
+			commentLikeCounter.take(Collections.singletonList(commentId));
+			commentPageCache.remove(postId, commentId);
+			bestCommentIndex.remove(postId, commentId);
+			postDetailCache.evict(postId);
 		} catch (Exception e) {
 			return new ResponseEntity(HttpStatus.FORBIDDEN);
 		}
@@ -92,28 +116,30 @@ public class CommentService {
 	}
 
 	@Transactional(readOnly = true)
-	public Page<Comment> findAllByPostPostId(Long postId, Pageable pageable) {
-		return commentRepository.findAllByPostPostId(postId, pageable);
+	public Slice<Comment> findAllByPostPostId(Long postId, Pageable pageable) {
+		return commentRepository.findSliceByPostPostId(postId, pageable);
 	}
 
+	/**
+	 * 좋아요 토글. 좋아요가 취소보다 많으므로 먼저 넣어 보고 이미 있으면 지운다. 좋아요 수는 CommentLikeCounter 가 모아서 반영한다.
+	 * postId 는 캐시를 고치는 데만 쓴다. 클라이언트가 보내면 좋아요는 문장 하나로 끝나고, 없으면 댓글에서 읽는다.
+	 */
 	@Transactional
-	public void likeUpdate(Long commentId, int value) {
-		commentRepository.likeUpdate(commentId, value);
-	}
-
-	@Transactional
-	public ResponseEntity likeComment(Long commentId, Long userId) {
-		Comment comment = findById(commentId).get();
+	public ResponseEntity likeComment(Long commentId, Long userId, Long postId) {
 		try {
-			if (likerRepository.findLiker(commentId, userId) > 0) {
-				Liker liker = likerRepository.findByComment_CommentIdAndUserId(commentId, userId).get();
-				likerRepository.delete(liker);
-				likeUpdate(commentId, -1);
-			} else {
-				Liker liker = new Liker(userId, comment);
-				likerRepository.save(liker);
-				likeUpdate(commentId, 1);
-			}
+			int delta;
+			if (likerRepository.insertLike(commentId, userId) > 0)
+				delta = 1;
+			else if (likerRepository.deleteLike(commentId, userId) > 0)
+				delta = -1;
+			else
+				return new ResponseEntity(HttpStatus.BAD_REQUEST);
+
+			Long cachedPostId = postId != null ? postId : commentRepository.findPostIdByCommentId(commentId);
+			commentLikeCounter.add(commentId, delta);
+			likedCommentCache.update(userId, commentId, delta > 0);
+			commentPageCache.like(cachedPostId, commentId, delta);
+			bestCommentIndex.like(cachedPostId, commentId, delta);
 		} catch (Exception e) {
 			return new ResponseEntity(HttpStatus.BAD_REQUEST);
 		}
@@ -121,22 +147,147 @@ public class CommentService {
 	}
 
 	public ResponseEntity findCommentsByPost(Long postId, long userId, int pageNum) {
-		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").ascending());
-		List<Comment> result = findAllByPostPostId(postId, pageRequest).getContent();
-		if (result == null) {
-			new ResponseEntity(HttpStatus.OK);
-		}
-
-		List<Long> likers = likerRepository.findAllByUserId(userId);
-		if(likers.isEmpty())
-			return new ResponseEntity(result, HttpStatus.OK);
-		else {
-			for(Comment comment : result) {
-				if(likers.contains(comment.getCommentId())){
-					comment.userLikeThis();
-				}
+		return new ResponseEntity(findCommentSlice(postId, userId, pageNum).getContent(), HttpStatus.OK);
+	}
+
+	public ResponseEntity findCommentsByPostSlice(Long postId, long userId, int pageNum) {
+		return new ResponseEntity(findCommentSlice(postId, userId, pageNum), HttpStatus.OK);
+	}
+
+	/**
+	 * (created_date, comment_id) 커서 페이징. 앞쪽 페이지는 CommentPageCache 에서 읽는다.
+	 */
+	public ResponseEntity findCommentsByPostByCursor(Long postId, long userId, String cursor) {
+		KeysetCursor after = null;
+		if (cursor != null && !cursor.isEmpty()) {
+			try {
+				after = KeysetCursor.decode(cursor);
+			} catch (IllegalArgumentException e) {
+				return new ResponseEntity(HttpStatus.BAD_REQUEST);
+			}
+		}
+		List<CommentResponseDto> rows = findCachedPage(postId, after, 0, 15 + 1);
+		if (rows == null) {
+			PageRequest limit = PageRequest.of(0, 15 + 1);
+			rows = toResponses(after == null
+				? commentRepository.findAllByPostIdFromStart(postId, limit)
+				: commentRepository.findAllByPostIdAfter(postId, after.getCreatedDate(), after.getId(), limit));
+		}
+		return new ResponseEntity(CursorResponseDto.of(withLikes(userId, rows), 15,
+			comment -> new KeysetCursor(comment.getCreatedDate(), comment.getCommentId())), HttpStatus.OK);
+	}
+
+	/**
+	 * 좋아요 많은 댓글. 순위는 BestCommentIndex 에서 고르고 본문은 해당 댓글만 id 로 읽는다.
+	 */
+	public ResponseEntity findBestComments(Long postId, long userId) {
+		List<BestCommentIndex.Ranked> ranked = bestCommentIndex.top(postId);
+		if (ranked == null) {
+			long version = bestCommentIndex.version(postId);
+			Map<Long, Integer> likes = new HashMap<>();
+			for (Object[] row : commentRepository.findLikesByPostId(postId)) {
+				Long commentId = ((Number) row[0]).longValue();
+				likes.put(commentId, ((Number) row[1]).intValue() + commentLikeCounter.pending(commentId));
+			}
+			bestCommentIndex.put(postId, likes, version);
+			ranked = bestCommentIndex.top(postId);
+			if (ranked == null)
+				ranked = bestCommentIndex.rank(likes);
+		}
+		if (ranked.isEmpty())
+			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
+
+		List<Long> commentIds = new ArrayList<>(ranked.size());
+		for (BestCommentIndex.Ranked entry : ranked) {
+			commentIds.add(entry.getCommentId());
+		}
+		Map<Long, Comment> comments = new HashMap<>();
+		for (Comment comment : commentRepository.findAllById(commentIds)) {
+			comments.put(comment.getCommentId(), comment);
+		}
+		List<CommentResponseDto> rows = new ArrayList<>(ranked.size());
+		for (BestCommentIndex.Ranked entry : ranked) {
+			Comment comment = comments.get(entry.getCommentId());
+			if (comment != null)
+				rows.add(new CommentResponseDto(comment, entry.getLikes(), false));
+		}
+		return new ResponseEntity(withLikes(userId, rows), HttpStatus.OK);
+	}
+
+	private SliceResponseDto<CommentResponseDto> findCommentSlice(Long postId, long userId, int pageNum) {
+		List<CommentResponseDto> rows = findCachedPage(postId, null, pageNum * 15, 15 + 1);
+		if (rows == null) {
+			PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate", "commentId").ascending());
+			Slice<Comment> result = findAllByPostPostId(postId, pageRequest);
+			return new SliceResponseDto<>(withLikes(userId, toResponses(result.getContent())), result.hasNext());
+		}
+		boolean hasNext = rows.size() > 15;
+		return new SliceResponseDto<>(withLikes(userId, hasNext ? rows.subList(0, 15) : rows), hasNext);
+	}
+
+	/**
+	 * 캐시에서 읽는다. 글이 아직 캐시에 없고 캐시 범위 안의 요청이면 앞쪽 페이지를 한 번에 읽어 넣는다.
+	 */
+	private List<CommentResponseDto> findCachedPage(Long postId, KeysetCursor after, int offset, int limit) {
+		List<CommentResponseDto> rows = after == null ? commentPageCache.get(postId, offset, limit) : commentPageCache.get(postId, after, limit);
+		if (rows != null || commentPageCache.contains(postId) || offset >= commentPageCache.capacity())
+			return rows;
+
+		long version = commentPageCache.version(postId);
+		List<Comment> comments = commentRepository.findAllByPostIdFromStart(postId, PageRequest.of(0, commentPageCache.capacity() + 1));
+		commentPageCache.put(postId, toResponses(comments), version);
+		return after == null ? commentPageCache.get(postId, offset, limit) : commentPageCache.get(postId, after, limit);
+	}
+
+	/**
+	 * DB 에서 읽은 댓글의 좋아요 수에 아직 반영되지 않은 증감을 더한다.
+	 */
+	private List<CommentResponseDto> toResponses(List<Comment> comments) {
+		List<CommentResponseDto> result = new ArrayList<>(comments.size());
+		for (Comment comment : comments) {
+			result.add(new CommentResponseDto(comment, comment.getCommentLikes() + commentLikeCounter.pending(comment.getCommentId()), false));
+		}
+		return result;
+	}
+
+	private List<CommentResponseDto> withLikes(long userId, List<CommentResponseDto> rows) {
+		if (rows.isEmpty())
+			return rows;
+		List<Long> commentIds = new ArrayList<>(rows.size());
+		for (CommentResponseDto row : rows) {
+			commentIds.add(row.getCommentId());
+		}
+		Set<Long> liked = findLikedCommentIds(userId, commentIds);
+		List<CommentResponseDto> result = new ArrayList<>(rows.size());
+		for (CommentResponseDto row : rows) {
+			result.add(new CommentResponseDto(row, row.getCommentLikes(), liked.contains(row.getCommentId())));
+		}
+		return result;
+	}
+
+	/**
+	 * 페이지에 있는 댓글 중 사용자가 좋아요한 것. 캐시가 켜져 있으면 사용자의 전체 목록을 한 번 읽어 두고 쓴다.
+	 */
+	private Set<Long> findLikedCommentIds(long userId, List<Long> commentIds) {
+		if (!likedCommentCache.isEnabled())
+			return new HashSet<>(likerRepository.findLikedCommentIds(userId, commentIds));
+
+		long[] cached = likedCommentCache.get(userId);
+		if (cached == null) {
+			long version = likedCommentCache.version(userId);
+			List<Long> all = likerRepository.findAllByUserId(userId);
+			cached = new long[all.size()];
+			for (int i = 0; i < cached.length; i++) {
+				cached[i] = all.get(i);
 			}
+			likedCommentCache.put(userId, cached, version);
+			Arrays.sort(cached);
+		}
+		Set<Long> liked = new HashSet<>();
+		for (Long commentId : commentIds) {
+			if (LikedCommentCache.contains(cached, commentId))
+				liked.add(commentId);
 		}
-		return new ResponseEntity(result, HttpStatus.OK);
+		return liked;
 	}
 }
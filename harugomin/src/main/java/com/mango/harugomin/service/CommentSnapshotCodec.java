@@ -0,0 +1,55 @@
+package com.mango.harugomin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mango.harugomin.dto.CommentSnapshotDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 보관함 글의 댓글 목록을 History.commentSnapshot 한 칸에 담기 위한 변환. JSON 배열을 deflate 한다.
+ */
+@RequiredArgsConstructor
+@Component
+public class CommentSnapshotCodec {
+
+	private static final TypeReference<List<CommentSnapshotDto>> SNAPSHOT_TYPE = new TypeReference<List<CommentSnapshotDto>>() {
+	};
+
+	private final ObjectMapper objectMapper;
+
+	public byte[] encode(List<CommentSnapshotDto> comments) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try (OutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+			objectMapper.writeValue(out, comments);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	public List<CommentSnapshotDto> decode(byte[] snapshot) {
+		if (snapshot == null || snapshot.length == 0)
+			return new ArrayList<>();
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(snapshot))) {
+			return objectMapper.readValue(in, SNAPSHOT_TYPE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.mango.harugomin.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * id 별 증감값을 메모리에 모아 두었다가 한꺼번에 DB 에 반영하기 위한 버퍼.
+ * 증감은 락 없이 CAS 로 처리하고, 한 id 에 여러 스레드가 몰려 CAS 가 부딪히면 LongAdder 처럼 스레드별 칸으로 나눈다.
+ * 꺼낼 때는 칸마다 값을 꺼내면서 닫고 맵에서 빼므로, 그 사이에 들어온 증가분은 닫힌 칸에 쌓이지 않고
+ * 새 칸으로 가서 다음 drain 에 포함된다. JDK 8 의 LongAdder.sumThenReset 은 꺼내는 도중의 증가분을 잃을 수 있어 쓰지 않는다.
+ */
+public class DeltaBuffer {
+
+	private static final long RETIRED = Long.MIN_VALUE;
+	// 나눈 칸 사이를 64 바이트 띄워 서로 다른 스레드가 같은 캐시 라인을 두고 다투지 않게 한다.
+	private static final int PAD = 8;
+	private static final int STRIPES = Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1), 16);
+	private static final AtomicLongArray CLOSED = new AtomicLongArray(0);
+
+	private final ConcurrentHashMap<Long, Cell> deltas = new ConcurrentHashMap<>();
+
+	public void add(Long id, long delta) {
+		while (true) {
+			Cell cell = deltas.computeIfAbsent(id, key -> new Cell());
+			if (cell.add(delta))
+				return;
+			deltas.remove(id, cell);
+		}
+	}
+
+	public long pending(Long id) {
+		Cell cell = deltas.get(id);
+		return cell == null ? 0 : cell.sum();
+	}
+
+	/**
+	 * 쌓인 증감값을 모두 꺼낸다.
+	 */
+	public Map<Long, Long> drain() {
+		Map<Long, Long> drained = new HashMap<>();
+		for (Long id : deltas.keySet()) {
+			long delta = drain(id);
+			if (delta != 0)
+				drained.put(id, delta);
+		}
+		return drained;
+	}
+
+	public long drain(Long id) {
+		Cell cell = deltas.get(id);
+		if (cell == null)
+			return 0;
+		long delta = cell.retire();
+		deltas.remove(id, cell);
+		return delta;
+	}
+
+	public void restore(Map<Long, Long> drained) {
+		for (Map.Entry<Long, Long> entry : drained.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public int size() {
+		return deltas.size();
+	}
+
+	/**
+	 * 같은 증감값을 가진 id 끼리 묶는다. 묶음마다 "where id in (...)" UPDATE 한 번이면 된다.
+	 */
+	public static Map<Long, List<Long>> groupByDelta(Map<Long, Long> drained) {
+		Map<Long, List<Long>> groups = new HashMap<>();
+		for (Map.Entry<Long, Long> entry : drained.entrySet()) {
+			groups.computeIfAbsent(entry.getValue(), delta -> new ArrayList<>()).add(entry.getKey());
+		}
+		return groups;
+	}
+
+	private static long valueOf(long value) {
+		return value == RETIRED ? 0 : value;
+	}
+
+	private static int stripe() {
+		return Long.hashCode(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) & (STRIPES - 1);
+	}
+
+	/**
+	 * 처음에는 base 하나만 쓰고, CAS 가 부딪힌 뒤에야 스레드별 칸을 만든다.
+	 */
+	private static class Cell {
+		private final AtomicLong base = new AtomicLong();
+		private final AtomicReference<AtomicLongArray> stripes = new AtomicReference<>();
+
+		/**
+		 * 이미 닫힌 칸이면 false. 호출한 쪽이 새 칸을 만들어 다시 더한다.
+		 */
+		private boolean add(long delta) {
+			AtomicLongArray striped = stripes.get();
+			if (striped == null) {
+				long current = base.get();
+				if (current == RETIRED)
+					return false;
+				if (base.compareAndSet(current, current + delta))
+					return true;
+				stripes.compareAndSet(null, new AtomicLongArray(STRIPES * PAD));
+				striped = stripes.get();
+			}
+			if (striped == CLOSED)
+				return false;
+			int index = stripe() * PAD;
+			while (true) {
+				long current = striped.get(index);
+				if (current == RETIRED)
+					return false;
+				if (striped.compareAndSet(index, current, current + delta))
+					return true;
+			}
+		}
+
+		private long sum() {
+			long sum = valueOf(base.get());
+			AtomicLongArray striped = stripes.get();
+			if (striped != null) {
+				for (int i = 0; i < striped.length(); i += PAD) {
+					sum += valueOf(striped.get(i));
+				}
+			}
+			return sum;
+		}
+
+		/**
+		 * 값을 모두 꺼내고 칸을 닫는다. 닫은 뒤에는 add 가 false 를 돌려준다.
+		 */
+		private long retire() {
+			long sum = valueOf(base.getAndSet(RETIRED));
+			AtomicLongArray striped = stripes.getAndSet(CLOSED);
+			if (striped != null) {
+				for (int i = 0; i < striped.length(); i += PAD) {
+					sum += valueOf(striped.getAndSet(i, RETIRED));
+				}
+			}
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.entity.Hashtag;
+import com.mango.harugomin.domain.repository.HashtagRepository;
+import com.mango.harugomin.dto.HashtagResponseDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 해시태그별 게시글 수와 인기순 상위 목록을 메모리에서 관리한다.
+ * 게시글 수 증가분은 모아 두었다가 주기적으로 hashtag.posting_count 에 반영한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class HashtagLeaderboard {
+
+	public static final int TOP_N = 12;
+
+	private final HashtagRepository hashtagRepository;
+
+	private final ConcurrentHashMap<String, TagCount> tags = new ConcurrentHashMap<>();
+	private final DeltaBuffer pending = new DeltaBuffer();
+	private final List<TagCount> leaders = new ArrayList<>();
+	private volatile List<HashtagResponseDto> top = Collections.emptyList();
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		for (Object[] row : hashtagRepository.findAllPostingCounts()) {
+			Long tagId = ((Number) row[0]).longValue();
+			long postingCount = row[2] == null ? 0 : ((Number) row[2]).longValue();
+			tags.put((String) row[1], new TagCount(tagId, (String) row[1], postingCount));
+		}
+		synchronized (this) {
+			leaders.clear();
+			List<TagCount> all = new ArrayList<>(tags.values());
+			all.sort((a, b) -> Long.compare(b.count.get(), a.count.get()));
+			leaders.addAll(all.subList(0, Math.min(TOP_N, all.size())));
+			publish();
+		}
+		log.info("Hashtag leaderboard loaded ::: {} hashtags", tags.size());
+	}
+
+	public void register(Hashtag hashtag) {
+		long postingCount = hashtag.getPostingCount() == null ? 0 : hashtag.getPostingCount();
+		TagCount tag = new TagCount(hashtag.getTagId(), hashtag.getTagName(), postingCount);
+		if (tags.putIfAbsent(hashtag.getTagName(), tag) == null)
+			promote(tag);
+	}
+
+	public boolean contains(String tagName) {
+		return tags.containsKey(tagName);
+	}
+
+	/**
+	 * 등록되지 않은 해시태그면 false 를 반환한다. 늘린 값은 되돌리지 않으므로 글이 커밋된 뒤에 부른다.
+	 */
+	public boolean countUp(String tagName) {
+		TagCount tag = tags.get(tagName);
+		if (tag == null)
+			return false;
+		tag.count.incrementAndGet();
+		pending.add(tag.tagId, 1);
+		promote(tag);
+		return true;
+	}
+
+	public List<HashtagResponseDto> getTop() {
+		return top;
+	}
+
+	@Scheduled(fixedDelayString = "${hago.hashtag.flush-interval-ms:10000}")
+	public void flush() {
+		Map<Long, Long> drained = pending.drain();
+		if (drained.isEmpty())
+			return;
+
+		Map<Long, Long> failed = new HashMap<>();
+		for (Map.Entry<Long, List<Long>> group : DeltaBuffer.groupByDelta(drained).entrySet()) {
+			try {
+				hashtagRepository.addPostingCount(group.getKey(), group.getValue());
+			} catch (Exception e) {
+				log.error("Hashtag posting count flush error ::: {}", e.getMessage());
+				for (Long tagId : group.getValue()) {
+					failed.put(tagId, group.getKey());
+				}
+			}
+		}
+		pending.restore(failed);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+	}
+
+	/**
+	 * 게시글 수는 늘어나기만 하므로 상위 목록에 들어오거나 앞으로 올라가는 경우만 처리하면 된다.
+	 */
+	private synchronized void promote(TagCount tag) {
+		int index = leaders.indexOf(tag);
+		if (index < 0) {
+			if (leaders.size() < TOP_N) {
+				leaders.add(tag);
+			} else if (tag.count.get() > leaders.get(TOP_N - 1).count.get()) {
+				leaders.set(TOP_N - 1, tag);
+			} else {
+				return;
+			}
+			index = leaders.size() - 1;
+		}
+		while (index > 0 && leaders.get(index - 1).count.get() < leaders.get(index).count.get()) {
+			Collections.swap(leaders, index - 1, index);
+			index--;
+		}
+		publish();
+	}
+
+	private void publish() {
+		List<HashtagResponseDto> result = new ArrayList<>(leaders.size());
+		for (TagCount tag : leaders) {
+			result.add(new HashtagResponseDto(tag.tagId, tag.tagName, tag.count.get()));
+		}
+		top = Collections.unmodifiableList(result);
+	}
+
+	private static class TagCount {
+		private final Long tagId;
+		private final String tagName;
+		private final AtomicLong count;
+
+		private TagCount(Long tagId, String tagName, long count) {
+			this.tagId = tagId;
+			this.tagName = tagName;
+			this.count = new AtomicLong(count);
+		}
+	}
+}
@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class HashtagService {
     private final HashtagRepository hashtagRepository;
+    private final HashtagLeaderboard hashtagLeaderboard;
 
     @Transactional
     public Hashtag saveHashtag(Hashtag hashtag){
@@ -18,7 +19,8 @@ public class HashtagService {
 
     @Transactional
 	public long addUserHashtag(String tagName) {
-		Hashtag hashtag = new Hashtag(tagName, 0);
-		return saveHashtag(hashtag).getTagId();
+		Hashtag hashtag = saveHashtag(new Hashtag(tagName, 0));
+		hashtagLeaderboard.register(hashtag);
+		return hashtag.getTagId();
 	}
 }
@@ -0,0 +1,445 @@
+package com.mango.harugomin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mango.harugomin.dto.HistoryDetailResponseDto;
+import com.mango.harugomin.dto.HistoryResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 오래된 보관함 글을 로컬 디스크의 압축 세그먼트 파일에 보관한다.
+ * 세그먼트는 추가만 하는 파일이고, 레코드 헤더(postId, userId, 작성일)만 읽어 시작 시 색인을 다시 만든다.
+ * 회원 탈퇴는 툼스톤 레코드를 덧붙여 처리하므로 기존 세그먼트를 고쳐 쓰지 않는다.
+ *
+ * 레코드 형식 : length(int) | type(byte) | postId(long) | userId(long) | epochSecond(long) | nano(int) | rawLength(int) | deflated json
+ */
+@Slf4j
+@Component
+public class HistoryArchiveStore {
+
+	private static final byte RECORD = 1;
+	private static final byte TOMBSTONE = 2;
+	private static final int HEADER_SIZE = 1 + 8 + 8 + 8 + 4 + 4;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	private static final Comparator<Location> NEWEST_FIRST = (a, b) -> {
+		int result = b.createdDate.compareTo(a.createdDate);
+		if (result != 0)
+			return result;
+		return Long.compare(b.postId, a.postId);
+	};
+
+	private final ObjectMapper objectMapper;
+	private final Path dir;
+	private final long segmentMaxBytes;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Long, Location> byPost = new HashMap<>();
+	private final Map<Long, TreeSet<Location>> byUser = new HashMap<>();
+	private final Map<Integer, FileChannel> readers = new HashMap<>();
+	private FileChannel writer;
+	private int writerSegment;
+
+	public HistoryArchiveStore(ObjectMapper objectMapper,
+							   @Value("${hago.archive.dir:/home/ubuntu/hago/archive/}") String dir,
+							   @Value("${hago.archive.segment-max-bytes:67108864}") long segmentMaxBytes) {
+		this.objectMapper = objectMapper;
+		this.dir = Paths.get(dir);
+		this.segmentMaxBytes = segmentMaxBytes;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() throws IOException {
+		Files.createDirectories(dir);
+		List<Integer> segments = listSegments();
+		lock.writeLock().lock();
+		try {
+			for (int i = 0; i < segments.size(); i++) {
+				scan(segments.get(i), i == segments.size() - 1);
+			}
+			writerSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+			writer = openWriter(writerSegment);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.info("History archive loaded ::: {} segments, {} posts", segments.size(), byPost.size());
+	}
+
+	@PreDestroy
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			closeQuietly(writer);
+			for (FileChannel reader : readers.values()) {
+				closeQuietly(reader);
+			}
+			readers.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 레코드를 현재 세그먼트 뒤에 붙이고 디스크에 반영(force)한 뒤에 색인에 올린다.
+	 * 호출한 쪽은 이 메소드가 정상 반환한 뒤에만 테이블에서 행을 지워야 한다.
+	 */
+	public void append(List<HistoryDetailResponseDto> histories) {
+		if (histories.isEmpty())
+			return;
+		lock.writeLock().lock();
+		try {
+			List<Location> written = new ArrayList<>();
+			for (HistoryDetailResponseDto history : histories) {
+				byte[] raw = objectMapper.writeValueAsBytes(history);
+				byte[] payload = deflate(raw);
+				ByteBuffer buffer = header(RECORD, history.getPostId(), history.getUserId(), history.getCreatedDate(), raw.length, payload.length);
+				buffer.put(payload);
+				buffer.flip();
+
+				rollIfFull();
+				long offset = writer.size();
+				while (buffer.hasRemaining()) {
+					writer.write(buffer);
+				}
+				written.add(new Location(writerSegment, offset, buffer.limit(), history.getPostId(), history.getUserId(), history.getCreatedDate()));
+			}
+			writer.force(false);
+			for (Location location : written) {
+				put(location);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void deleteUser(Long userId) {
+		lock.writeLock().lock();
+		try {
+			if (!byUser.containsKey(userId))
+				return;
+			ByteBuffer buffer = header(TOMBSTONE, 0L, userId, LocalDateTime.now(), 0, 0);
+			buffer.flip();
+			rollIfFull();
+			while (buffer.hasRemaining()) {
+				writer.write(buffer);
+			}
+			writer.force(false);
+			removeUser(userId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean contains(Long postId) {
+		lock.readLock().lock();
+		try {
+			return byPost.containsKey(postId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Optional<HistoryDetailResponseDto> find(Long postId) {
+		Location location;
+		lock.readLock().lock();
+		try {
+			location = byPost.get(postId);
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (location == null)
+			return Optional.empty();
+		return Optional.of(read(location));
+	}
+
+	public int countByUser(Long userId) {
+		lock.readLock().lock();
+		try {
+			TreeSet<Location> locations = byUser.get(userId);
+			return locations == null ? 0 : locations.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 작성일 역순으로 offset 번째부터 limit 개.
+	 */
+	public List<HistoryResponseDto> findByUser(Long userId, int offset, int limit) {
+		List<Location> page = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			TreeSet<Location> locations = byUser.get(userId);
+			if (locations != null) {
+				Iterator<Location> iterator = locations.iterator();
+				for (int i = 0; i < offset && iterator.hasNext(); i++) {
+					iterator.next();
+				}
+				while (page.size() < limit && iterator.hasNext()) {
+					page.add(iterator.next());
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return readAll(page);
+	}
+
+	/**
+	 * (createdDate, postId) 보다 오래된 글을 작성일 역순으로 limit 개.
+	 */
+	public List<HistoryResponseDto> findByUserBefore(Long userId, LocalDateTime createdDate, Long postId, int limit) {
+		List<Location> page = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			TreeSet<Location> locations = byUser.get(userId);
+			if (locations != null) {
+				Location from = new Location(0, 0, 0, postId, userId, createdDate);
+				for (Location location : locations.tailSet(from, false)) {
+					if (page.size() >= limit)
+						break;
+					page.add(location);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return readAll(page);
+	}
+
+	/**
+	 * 목록에는 댓글을 싣지 않는다.
+	 */
+	private List<HistoryResponseDto> readAll(List<Location> locations) {
+		List<HistoryResponseDto> result = new ArrayList<>(locations.size());
+		for (Location location : locations) {
+			result.add(new HistoryResponseDto(read(location)));
+		}
+		return result;
+	}
+
+	private HistoryDetailResponseDto read(Location location) {
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(location.length);
+			if (!readFully(reader(location.segment), buffer, location.offset))
+				throw new IOException("Truncated archive record ::: post " + location.postId);
+			buffer.flip();
+			buffer.position(4 + HEADER_SIZE - 4);
+			int rawLength = buffer.getInt();
+			byte[] payload = new byte[buffer.remaining()];
+			buffer.get(payload);
+			return objectMapper.readValue(inflate(payload, rawLength), HistoryDetailResponseDto.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void scan(int segment, boolean active) throws IOException {
+		Path path = segmentPath(segment);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			long offset = 0;
+			ByteBuffer header = ByteBuffer.allocate(4 + HEADER_SIZE);
+			while (offset + header.capacity() <= size) {
+				header.clear();
+				if (!readFully(channel, header, offset))
+					break;
+				header.flip();
+				int length = header.getInt();
+				if (length < header.capacity() || offset + length > size)
+					break;
+				byte type = header.get();
+				long postId = header.getLong();
+				long userId = header.getLong();
+				LocalDateTime createdDate = LocalDateTime.ofEpochSecond(header.getLong(), header.getInt(), ZoneOffset.UTC);
+
+				if (type == RECORD)
+					put(new Location(segment, offset, length, postId, userId, createdDate));
+				else if (type == TOMBSTONE)
+					removeUser(userId);
+				offset += length;
+			}
+			if (offset < size) {
+				log.warn("History archive segment {} has a torn tail at {} ::: {} bytes dropped", segment, offset, size - offset);
+				if (active)
+					channel.truncate(offset);
+			}
+		}
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				return false;
+			position += read;
+		}
+		return true;
+	}
+
+	private void put(Location location) {
+		Location previous = byPost.put(location.postId, location);
+		if (previous != null) {
+			TreeSet<Location> locations = byUser.get(previous.userId);
+			if (locations != null)
+				locations.remove(previous);
+		}
+		byUser.computeIfAbsent(location.userId, key -> new TreeSet<>(NEWEST_FIRST)).add(location);
+	}
+
+	private void removeUser(Long userId) {
+		TreeSet<Location> locations = byUser.remove(userId);
+		if (locations == null)
+			return;
+		for (Location location : locations) {
+			byPost.remove(location.postId);
+		}
+	}
+
+	private ByteBuffer header(byte type, Long postId, Long userId, LocalDateTime createdDate, int rawLength, int payloadLength) {
+		int length = 4 + HEADER_SIZE + payloadLength;
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.putInt(length);
+		buffer.put(type);
+		buffer.putLong(postId);
+		buffer.putLong(userId);
+		buffer.putLong(createdDate.toEpochSecond(ZoneOffset.UTC));
+		buffer.putInt(createdDate.getNano());
+		buffer.putInt(rawLength);
+		return buffer;
+	}
+
+	private void rollIfFull() throws IOException {
+		if (writer.size() < segmentMaxBytes)
+			return;
+		writer.force(false);
+		writer.close();
+		writerSegment++;
+		writer = openWriter(writerSegment);
+	}
+
+	private FileChannel openWriter(int segment) throws IOException {
+		return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private FileChannel reader(int segment) throws IOException {
+		synchronized (readers) {
+			FileChannel reader = readers.get(segment);
+			if (reader == null) {
+				reader = FileChannel.open(segmentPath(segment), StandardOpenOption.READ);
+				readers.put(segment, reader);
+			}
+			return reader;
+		}
+	}
+
+	private List<Integer> listSegments() throws IOException {
+		List<Integer> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private Path segmentPath(int segment) {
+		return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+	}
+
+	private static byte[] deflate(byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] buffer = new byte[Math.max(64, raw.length)];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == buffer.length)
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] payload, int rawLength) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(payload);
+			byte[] raw = new byte[rawLength];
+			int length = 0;
+			while (length < rawLength && !inflater.finished()) {
+				int inflated = inflater.inflate(raw, length, rawLength - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				length += inflated;
+			}
+			if (length != rawLength)
+				throw new IOException("Corrupted archive record");
+			return raw;
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.warn("Failed to close archive segment ::: {}", e.getMessage());
+		}
+	}
+
+	private static class Location {
+		private final int segment;
+		private final long offset;
+		private final int length;
+		private final long postId;
+		private final long userId;
+		private final LocalDateTime createdDate;
+
+		private Location(int segment, long offset, int length, long postId, long userId, LocalDateTime createdDate) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.postId = postId;
+			this.userId = userId;
+			this.createdDate = createdDate;
+		}
+	}
+}
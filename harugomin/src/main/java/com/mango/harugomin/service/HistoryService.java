@@ -2,17 +2,124 @@ package com.mango.harugomin.service;
 
 import com.mango.harugomin.domain.entity.History;
 import com.mango.harugomin.domain.repository.HistoryRepository;
+import com.mango.harugomin.dto.HistoryDetailResponseDto;
+import com.mango.harugomin.dto.HistoryResponseDto;
+import com.mango.harugomin.dto.SliceResponseDto;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * 보관함 조회. 최근 글은 history 테이블에, cold-after-days 가 지난 글은 HistoryArchiveStore 세그먼트에 있고
+ * 조회하는 쪽에서는 구분 없이 작성일 역순으로 이어서 보인다.
+ */
+@Slf4j
 @RequiredArgsConstructor
 @Service
 public class HistoryService {
     private final HistoryRepository historyRepository;
+    private final HistoryArchiveStore historyArchiveStore;
+    private final CommentSnapshotCodec commentSnapshotCodec;
 
-    public Optional<History> findById(Long historyId){
-        return historyRepository.findById(historyId);
+    @Value("${hago.archive.cold-after-days:30}")
+    private long coldAfterDays;
+    @Value("${hago.archive.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 상세 조회. 댓글은 보관 시점에 저장해 둔 스냅샷에서 읽으므로 행 하나만 읽는다.
+     */
+    public Optional<HistoryDetailResponseDto> findById(Long historyId) {
+        Optional<History> history = historyRepository.findById(historyId);
+        if (history.isPresent())
+            return Optional.of(toDetail(history.get()));
+        return historyArchiveStore.find(historyId);
+    }
+
+    /**
+     * 테이블의 글을 먼저 보여 주고, 테이블이 끝나는 페이지부터 세그먼트의 글로 이어 채운다.
+     */
+    public SliceResponseDto<HistoryResponseDto> findSliceByUser(Long userId, int pageNum, int size) {
+        PageRequest pageRequest = PageRequest.of(pageNum, size, Sort.by("createdDate").descending());
+        Slice<HistoryResponseDto> hot = historyRepository.findSliceByUserId(userId, pageRequest);
+        List<HistoryResponseDto> content = new ArrayList<>(hot.getContent());
+        if (hot.hasNext())
+            return new SliceResponseDto<>(content, true);
+
+        long hotTotal = hot.hasContent()
+            ? (long) pageNum * size + hot.getNumberOfElements()
+            : historyRepository.countByUserUserId(userId);
+        int coldOffset = (int) Math.max(0, (long) pageNum * size + content.size() - hotTotal);
+        int needed = size - content.size();
+        List<HistoryResponseDto> cold = historyArchiveStore.findByUser(userId, coldOffset, needed + 1);
+        boolean hasNext = cold.size() > needed;
+        content.addAll(hasNext ? cold.subList(0, needed) : cold);
+        return new SliceResponseDto<>(content, hasNext);
+    }
+
+    /**
+     * (createdDate, postId) 보다 오래된 글을 limit 개. 테이블에서 모자라는 만큼 세그먼트에서 채운다.
+     */
+    public List<HistoryResponseDto> findByUserBefore(Long userId, LocalDateTime createdDate, Long postId, int limit) {
+        List<HistoryResponseDto> result = new ArrayList<>(historyRepository.findAllByUserIdBefore(userId, createdDate, postId, PageRequest.of(0, limit)));
+        if (result.size() >= limit)
+            return result;
+
+        if (!result.isEmpty()) {
+            HistoryResponseDto last = result.get(result.size() - 1);
+            createdDate = last.getCreatedDate();
+            postId = last.getPostId();
+        }
+        result.addAll(historyArchiveStore.findByUserBefore(userId, createdDate, postId, limit - result.size()));
+        return result;
+    }
+
+    public void deleteAllByUser(Long userId) {
+        historyRepository.deleteAllByUsers(userId);
+        historyArchiveStore.deleteUser(userId);
+    }
+
+    /**
+     * cold-after-days 가 지난 행을 세그먼트로 옮긴다. 세그먼트에 기록(force)된 뒤에만 테이블에서 지우므로
+     * 중간에 실패하면 다음 실행에서 같은 행을 다시 옮기고, 세그먼트 색인은 postId 기준으로 마지막 레코드만 남긴다.
+     */
+    @Scheduled(fixedDelayString = "${hago.archive.compact-interval-ms:3600000}",
+        initialDelayString = "${hago.archive.compact-interval-ms:3600000}")
+    public void compact() {
+        LocalDateTime threshold = LocalDateTime.now().minusDays(coldAfterDays);
+        int moved = 0;
+        try {
+            List<History> rows = historyRepository.findAllCreatedBefore(threshold, PageRequest.of(0, batchSize));
+            while (!rows.isEmpty()) {
+                List<HistoryDetailResponseDto> details = new ArrayList<>(rows.size());
+                List<Long> postIds = new ArrayList<>(rows.size());
+                for (History row : rows) {
+                    details.add(toDetail(row));
+                    postIds.add(row.getPostId());
+                }
+                historyArchiveStore.append(details);
+                historyRepository.deleteAllByPostIdIn(postIds);
+                moved += rows.size();
+                rows = historyRepository.findAllCreatedBefore(threshold, PageRequest.of(0, batchSize));
+            }
+        } catch (Exception e) {
+            log.error("History compaction failed ::: {}", e.getMessage(), e);
+        }
+        if (moved > 0)
+            log.info("History compaction ::: {} rows moved to archive segments", moved);
+    }
+
+    private HistoryDetailResponseDto toDetail(History history) {
+        return new HistoryDetailResponseDto(history, commentSnapshotCodec.decode(history.getCommentSnapshot()));
     }
 }
@@ -0,0 +1,226 @@
+package com.mango.harugomin.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 업로드된 사진을 한 번 디코딩해서 피드/스토리/상세용 크기의 JPEG 을 만든다.
+ * 업로드 요청은 작업을 큐에 넣고 바로 반환하며, 큐가 가득 차면 작업을 버리고(rejected 카운트) 응답의 변형 key 는 원본 key 가 된다.
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+	public static final String FEED = "feed";
+	public static final String STORY = "story";
+	public static final String DETAIL = "detail";
+
+	private static final Map<String, Integer> WIDTHS = new LinkedHashMap<>();
+	private static final long MAX_PIXELS = 40_000_000L;
+	private static final float JPEG_QUALITY = 0.85f;
+
+	static {
+		WIDTHS.put(FEED, 360);
+		WIDTHS.put(STORY, 720);
+		WIDTHS.put(DETAIL, 1080);
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final Counter generatedCounter;
+	private final Counter rejectedCounter;
+	private final Counter failedCounter;
+
+	public ImageVariantService(MeterRegistry meterRegistry,
+							   @Value("${hago.image.workers:2}") int workers,
+							   @Value("${hago.image.queue-capacity:64}") int queueCapacity) {
+		AtomicInteger sequence = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity),
+			runnable -> {
+				Thread thread = new Thread(runnable, "image-variant-" + sequence.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			},
+			new ThreadPoolExecutor.AbortPolicy());
+		this.generatedCounter = meterRegistry.counter("hago.image.variants.generated");
+		this.rejectedCounter = meterRegistry.counter("hago.image.variants.rejected");
+		this.failedCounter = meterRegistry.counter("hago.image.variants.failed");
+		Gauge.builder("hago.image.variants.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+		Gauge.builder("hago.image.variants.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * 원본 key 로부터 변형 이미지 key 를 만든다. "ab/cd/hash.png" -> "ab/cd/hash_feed.jpg"
+	 */
+	public static Map<String, String> variantKeys(String key) {
+		int slash = key.lastIndexOf('/');
+		int dot = key.lastIndexOf('.');
+		String base = dot > slash ? key.substring(0, dot) : key;
+		Map<String, String> keys = new LinkedHashMap<>();
+		for (String variant : WIDTHS.keySet()) {
+			keys.put(variant, base + "_" + variant + ".jpg");
+		}
+		return keys;
+	}
+
+	/**
+	 * 변형 이미지를 만들지 못한 경우(큐가 가득 찼거나 디코딩할 수 없는 파일) 모든 변형 key 를 원본 key 로 채운다.
+	 */
+	public static Map<String, String> variantKeys(String key, boolean generated) {
+		if (generated)
+			return variantKeys(key);
+		Map<String, String> keys = new LinkedHashMap<>();
+		for (String variant : WIDTHS.keySet()) {
+			keys.put(variant, key);
+		}
+		return keys;
+	}
+
+	/**
+	 * 헤더만 읽어 디코딩할 수 있고 너무 크지 않은 이미지인지 본다. 변형 이미지 key 를 응답에 줄지 정할 때 쓴다.
+	 */
+	public boolean isSupported(InputStreamSource source) {
+		try (InputStream in = source.getInputStream();
+			 ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+			if (imageIn == null)
+				return false;
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+			if (!readers.hasNext())
+				return false;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(imageIn, true, true);
+				return (long) reader.getWidth(0) * reader.getHeight(0) <= MAX_PIXELS;
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 변형 이미지 생성을 예약한다. 큐가 가득 차 있으면 false.
+	 */
+	public boolean submit(String key, InputStreamSource source, ImageVariantSink sink) {
+		try {
+			executor.execute(() -> generate(key, source, sink));
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejectedCounter.increment();
+			log.warn("Image variant queue is full ::: {} skipped", key);
+			return false;
+		}
+	}
+
+	private void generate(String key, InputStreamSource source, ImageVariantSink sink) {
+		try {
+			BufferedImage original = decode(source);
+			if (original == null) {
+				log.info("Image variant skipped, not a decodable image ::: {}", key);
+				return;
+			}
+			Map<String, String> keys = variantKeys(key);
+			for (Map.Entry<String, Integer> width : WIDTHS.entrySet()) {
+				BufferedImage resized = resize(original, width.getValue());
+				sink.write(keys.get(width.getKey()), encode(resized), "image/jpeg");
+				generatedCounter.increment();
+			}
+		} catch (Exception e) {
+			failedCounter.increment();
+			log.error("Image variant generation failed ::: {} {}", key, e.getMessage());
+		}
+	}
+
+	/**
+	 * 크기부터 읽어 지나치게 큰 이미지는 디코딩하지 않는다.
+	 */
+	private BufferedImage decode(InputStreamSource source) throws IOException {
+		try (InputStream in = source.getInputStream();
+			 ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+			if (imageIn == null)
+				return null;
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+			if (!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(imageIn, true, true);
+				if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS)
+					throw new IOException("Image too large ::: " + reader.getWidth(0) + "x" + reader.getHeight(0));
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * 원본보다 크게 늘리지는 않는다. 투명 배경은 흰색으로 채운다.
+	 */
+	private BufferedImage resize(BufferedImage original, int targetWidth) {
+		int width = Math.min(targetWidth, original.getWidth());
+		int height = Math.max(1, (int) Math.round((double) original.getHeight() * width / original.getWidth()));
+		BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = resized.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.drawImage(original, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return resized;
+	}
+
+	private byte[] encode(BufferedImage image) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+			writer.setOutput(imageOut);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+}
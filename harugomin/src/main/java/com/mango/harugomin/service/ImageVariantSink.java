@@ -0,0 +1,11 @@
+package com.mango.harugomin.service;
+
+import java.io.IOException;
+
+/**
+ * ImageVariantService 가 만든 변형 이미지를 저장할 곳. 고민글 사진은 로컬 LocalBlobStore, 프로필 사진은 S3 에 저장한다.
+ */
+@FunctionalInterface
+public interface ImageVariantSink {
+	void write(String key, byte[] data, String contentType) throws IOException;
+}
@@ -0,0 +1,113 @@
+package com.mango.harugomin.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 사용자별로 좋아요한 댓글 id 를 정렬된 long[] 로 캐시한다. 댓글 페이지마다 liker 를 조회하지 않고 이진 탐색으로 isLike 를 정한다.
+ * 사용자 수가 maxUsers 를 넘으면 가장 오래 조회되지 않은 사용자부터 버린다. hago.comment-likes.cache.enabled 로 켠다.
+ */
+@Component
+public class LikedCommentCache {
+
+	private static final int VERSION_SLOTS = 1024;
+
+	private final boolean enabled;
+	private final int maxUsers;
+	private final LinkedHashMap<Long, long[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+	// 사용자별 버전. 사용자 id 를 해시한 칸을 쓰므로 같은 칸을 쓰는 다른 사용자의 변경도 put 을 막지만 잘못된 값이 들어가지는 않는다.
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_SLOTS);
+
+	public LikedCommentCache(@Value("${hago.comment-likes.cache.enabled:false}") boolean enabled,
+							 @Value("${hago.comment-likes.cache.max-users:10000}") int maxUsers) {
+		this.enabled = enabled;
+		this.maxUsers = maxUsers;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized long[] get(Long userId) {
+		return entries.get(userId);
+	}
+
+	/**
+	 * DB 조회 전에 받아 둔 사용자의 버전. 조회하는 사이에 그 사용자의 좋아요가 바뀌었으면 put 이 무시된다.
+	 */
+	public long version(Long userId) {
+		return versions.get(slot(userId));
+	}
+
+	public synchronized void put(Long userId, long[] commentIds, long loadedVersion) {
+		if (loadedVersion != versions.get(slot(userId)))
+			return;
+		long[] sorted = commentIds.clone();
+		Arrays.sort(sorted);
+		entries.put(userId, sorted);
+
+		Iterator<Map.Entry<Long, long[]>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxUsers && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * 좋아요 토글 결과를 캐시된 배열에 반영한다. 트랜잭션 안에서 부르면 커밋 뒤에 반영한다.
+	 */
+	public void update(Long userId, long commentId, boolean liked) {
+		AfterCommit.run(() -> apply(userId, commentId, liked));
+	}
+
+	/**
+	 * 배열은 읽는 쪽과 공유하므로 새로 만들어 바꾼다.
+	 */
+	private synchronized void apply(Long userId, long commentId, boolean liked) {
+		versions.incrementAndGet(slot(userId));
+		long[] current = entries.get(userId);
+		if (current == null)
+			return;
+		int index = Arrays.binarySearch(current, commentId);
+		if (liked && index < 0) {
+			int insertAt = -index - 1;
+			long[] next = new long[current.length + 1];
+			System.arraycopy(current, 0, next, 0, insertAt);
+			next[insertAt] = commentId;
+			System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+			entries.put(userId, next);
+		} else if (!liked && index >= 0) {
+			long[] next = new long[current.length - 1];
+			System.arraycopy(current, 0, next, 0, index);
+			System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+			entries.put(userId, next);
+		}
+	}
+
+	public void evict(Long userId) {
+		AfterCommit.run(() -> remove(userId));
+	}
+
+	private synchronized void remove(Long userId) {
+		versions.incrementAndGet(slot(userId));
+		entries.remove(userId);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static int slot(Long userId) {
+		return (Long.hashCode(userId) & 0x7fffffff) % VERSION_SLOTS;
+	}
+
+	public static boolean contains(long[] commentIds, long commentId) {
+		return Arrays.binarySearch(commentIds, commentId) >= 0;
+	}
+}
@@ -0,0 +1,186 @@
+package com.mango.harugomin.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 업로드 파일을 내용의 SHA-256 으로 이름 붙여 저장한다. key 는 "ab/cd/<hash>.<ext>" 형태이고
+ * 앞 두 바이트로 디렉토리를 나눠 한 디렉토리에 파일이 몰리지 않게 한다. 같은 내용은 한 번만 저장된다.
+ */
+@Slf4j
+@Component
+public class LocalBlobStore {
+
+	private static final Pattern KEY_PATTERN = Pattern.compile("^[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64}(?:_[a-z]+)?)(\\.[a-z0-9]{1,5})?$");
+	private static final Pattern EXTENSION_PATTERN = Pattern.compile("^[a-z0-9]{1,5}$");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path root;
+	private final Path tmp;
+
+	public LocalBlobStore(@Value("${hago.files.dir:/home/ubuntu/hago/files/}") String root) {
+		this.root = Paths.get(root);
+		this.tmp = this.root.resolve("tmp");
+	}
+
+	/**
+	 * 임시 파일에 쓰면서 해시를 계산하고, 다 쓴 뒤 해시 경로로 옮긴다. 이미 같은 파일이 있으면 임시 파일만 지운다.
+	 */
+	public String store(InputStream in, String extension) throws IOException {
+		Files.createDirectories(tmp);
+		Path temp = Files.createTempFile(tmp, "upload-", ".part");
+		try {
+			String hash;
+			try (ReadableByteChannel source = Channels.newChannel(in);
+				 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				hash = copy(source, target);
+				target.force(false);
+			}
+			return commit(temp, hash, extension);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * 이미 디스크에 있는 파일(이어 올리기로 조립된 파일)을 저장소로 옮긴다. 같은 파일 시스템이면 복사 없이 이동만 한다.
+	 */
+	public String store(Path file, String extension) throws IOException {
+		Files.createDirectories(tmp);
+		String hash;
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			hash = digest(source);
+		}
+		try {
+			return commit(file, hash, extension);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	public static boolean isValidKey(String key) {
+		return key != null && KEY_PATTERN.matcher(key).matches();
+	}
+
+	/**
+	 * key 에 담긴 content hash (변형 이미지는 _feed 같은 접미사 포함). ETag 로 쓴다.
+	 */
+	public static String hashOf(String key) {
+		Matcher matcher = KEY_PATTERN.matcher(key);
+		if (!matcher.matches())
+			throw new IllegalArgumentException("Invalid blob key ::: " + key);
+		return matcher.group(1);
+	}
+
+	public Path resolve(String key) {
+		if (!isValidKey(key))
+			throw new IllegalArgumentException("Invalid blob key ::: " + key);
+		return root.resolve(key);
+	}
+
+	/**
+	 * ImageVariantService 가 만든 변형 이미지를 원본 key 에서 파생된 key 로 저장한다.
+	 */
+	public void storeVariant(String key, byte[] data, String contentType) throws IOException {
+		Path target = resolve(key);
+		Files.createDirectories(tmp);
+		Path temp = Files.createTempFile(tmp, "variant-", ".part");
+		try {
+			Files.write(temp, data);
+			Files.createDirectories(target.getParent());
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	public boolean exists(String key) {
+		return isValidKey(key) && Files.isRegularFile(root.resolve(key));
+	}
+
+	private String commit(Path file, String hash, String extension) throws IOException {
+		String key = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + normalize(extension);
+		Path target = root.resolve(key);
+		if (Files.exists(target))
+			return key;
+
+		Files.createDirectories(target.getParent());
+		try {
+			Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			// 다른 파일 시스템에서 온 파일. 임시 디렉토리로 복사한 뒤 다시 원자적으로 옮긴다.
+			Path copy = Files.createTempFile(tmp, "move-", ".part");
+			try {
+				Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(copy);
+			}
+		} catch (FileAlreadyExistsException e) {
+			// 같은 내용이 동시에 올라온 경우. 먼저 옮겨진 파일을 그대로 쓴다.
+		}
+		return key;
+	}
+
+	private String normalize(String extension) {
+		if (extension == null)
+			return "";
+		String lower = extension.toLowerCase();
+		return EXTENSION_PATTERN.matcher(lower).matches() ? "." + lower : "";
+	}
+
+	private static String copy(ReadableByteChannel source, FileChannel target) throws IOException {
+		MessageDigest digest = sha256();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		while (source.read(buffer) >= 0) {
+			buffer.flip();
+			digest.update(buffer.duplicate());
+			while (buffer.hasRemaining()) {
+				target.write(buffer);
+			}
+			buffer.clear();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String digest(FileChannel source) throws IOException {
+		MessageDigest digest = sha256();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		while (source.read(buffer) >= 0) {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+}
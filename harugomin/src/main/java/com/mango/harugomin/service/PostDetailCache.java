@@ -0,0 +1,168 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.dto.HistoryResponseDto;
+import com.mango.harugomin.dto.PostResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 고민글 상세 조회 결과(PostResponseDto 또는 보관함의 History)를 postId 로 캐시한다.
+ * 본문 길이로 크기를 어림해 전체 크기가 maxBytes 를 넘으면 가장 오래 조회되지 않은 항목부터 버린다.
+ */
+@Component
+public class PostDetailCache {
+
+	private static final long ENTRY_OVERHEAD = 256;
+
+	private final long maxBytes;
+	private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private final AtomicLong generation = new AtomicLong();
+	private long bytes = 0;
+
+	private final Counter hitCounter;
+	private final Counter missCounter;
+	private final Counter evictionCounter;
+
+	public PostDetailCache(MeterRegistry meterRegistry, @Value("${hago.post-cache.max-bytes:33554432}") long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.hitCounter = meterRegistry.counter("hago.post.cache.hits");
+		this.missCounter = meterRegistry.counter("hago.post.cache.misses");
+		this.evictionCounter = meterRegistry.counter("hago.post.cache.evictions");
+		Gauge.builder("hago.post.cache.size", this, PostDetailCache::size).register(meterRegistry);
+		Gauge.builder("hago.post.cache.bytes", this, PostDetailCache::bytes).register(meterRegistry);
+	}
+
+	public synchronized Object get(Long postId) {
+		Entry entry = entries.get(postId);
+		if (entry == null) {
+			missCounter.increment();
+			return null;
+		}
+		hitCounter.increment();
+		return entry.value;
+	}
+
+	/**
+	 * DB 조회 전에 받아 둔 값. 조회하는 사이에 무효화가 있었으면 put 이 무시된다.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	public synchronized void put(Long postId, Object value, long weight, long loadedGeneration) {
+		if (loadedGeneration != generation.get())
+			return;
+		Entry previous = entries.put(postId, new Entry(value, weight + ENTRY_OVERHEAD));
+		if (previous != null)
+			bytes -= previous.weight;
+		bytes += weight + ENTRY_OVERHEAD;
+
+		Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Entry eldest = iterator.next().getValue();
+			iterator.remove();
+			bytes -= eldest.weight;
+			evictionCounter.increment();
+		}
+	}
+
+	/**
+	 * 트랜잭션 안에서 부르면 커밋 뒤에 지운다.
+	 */
+	public void evict(Long postId) {
+		evictAll(Collections.singletonList(postId));
+	}
+
+	public void evictAll(Collection<Long> postIds) {
+		AfterCommit.run(() -> remove(postIds));
+	}
+
+	/**
+	 * 작성자의 닉네임이나 프로필 사진이 바뀌었거나 탈퇴했을 때 그 사용자의 글을 모두 지운다.
+	 * 사용자별 목록을 따로 두지 않고 캐시 전체를 훑는다. 드문 작업이라 조회 쪽 비용을 늘리지 않는 편을 택했다.
+	 */
+	public void evictUser(Long userId) {
+		AfterCommit.run(() -> removeUser(userId));
+	}
+
+	/**
+	 * DB 에 반영된 조회수를 캐시된 글에도 더한다. 지우지 않고 고치므로 조회수 반영 때문에 인기글이 캐시에서 빠지지 않는다.
+	 */
+	public synchronized void addHits(Collection<Long> postIds, long delta) {
+		generation.incrementAndGet();
+		for (Long postId : postIds) {
+			Entry entry = entries.get(postId);
+			if (entry == null || !(entry.value instanceof PostResponseDto))
+				continue;
+			PostResponseDto updated = new PostResponseDto((PostResponseDto) entry.value);
+			updated.setHits(updated.getHits() + (int) delta);
+			entries.put(postId, new Entry(updated, entry.weight));
+		}
+	}
+
+	private synchronized void remove(Collection<Long> postIds) {
+		generation.incrementAndGet();
+		for (Long postId : postIds) {
+			Entry entry = entries.remove(postId);
+			if (entry != null)
+				bytes -= entry.weight;
+		}
+	}
+
+	private synchronized void removeUser(Long userId) {
+		generation.incrementAndGet();
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (!userId.equals(userIdOf(entry.value)))
+				continue;
+			iterator.remove();
+			bytes -= entry.weight;
+		}
+	}
+
+	private static Long userIdOf(Object value) {
+		if (value instanceof PostResponseDto)
+			return ((PostResponseDto) value).getUserId();
+		if (value instanceof HistoryResponseDto)
+			return ((HistoryResponseDto) value).getUserId();
+		return null;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	public static long weigh(String... values) {
+		long weight = 0;
+		for (String value : values) {
+			if (value != null)
+				weight += value.length() * 2L;
+		}
+		return weight;
+	}
+
+	private static class Entry {
+		private final Object value;
+		private final long weight;
+
+		private Entry(Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
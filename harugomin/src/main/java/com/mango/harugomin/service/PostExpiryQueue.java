@@ -0,0 +1,125 @@
+package com.mango.harugomin.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 게시중인 고민글을 만료 시각(created_date + 게시 시간) 순으로 정렬해 두는 큐.
+ * 만료된 글의 보관함 이동은 PostExpiryService 가 배치로 처리한다.
+ */
+@Component
+public class PostExpiryQueue {
+
+	public static final long POST_LIFETIME_SECONDS = 86300;
+
+	private final ConcurrentSkipListSet<Entry> queue = new ConcurrentSkipListSet<>();
+	private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+	public static boolean isExpired(LocalDateTime createdDate, LocalDateTime now) {
+		return Duration.between(createdDate, now).getSeconds() >= POST_LIFETIME_SECONDS;
+	}
+
+	public synchronized void register(Long postId, LocalDateTime createdDate) {
+		if (postId == null || createdDate == null)
+			return;
+		Entry entry = new Entry(createdDate.plusSeconds(POST_LIFETIME_SECONDS), postId);
+		Entry previous = entries.put(postId, entry);
+		if (previous != null)
+			queue.remove(previous);
+		queue.add(entry);
+	}
+
+	public synchronized void remove(Long postId) {
+		Entry entry = entries.remove(postId);
+		if (entry != null)
+			queue.remove(entry);
+	}
+
+	public void removeAll(Collection<Long> postIds) {
+		for (Long postId : postIds) {
+			remove(postId);
+		}
+	}
+
+	/**
+	 * 보관함 이동에 실패한 글을 at 까지 미룬다. 그 사이 삭제된 글이면 다시 넣지 않는다.
+	 */
+	public synchronized void postpone(Long postId, LocalDateTime at) {
+		Entry previous = entries.get(postId);
+		if (previous == null)
+			return;
+		Entry entry = new Entry(at, postId);
+		entries.put(postId, entry);
+		queue.remove(previous);
+		queue.add(entry);
+	}
+
+	/**
+	 * 만료된 글을 만료 시각 순으로 최대 max 개 반환한다. 큐에서 제거하지는 않으므로
+	 * 보관함 이동이 끝난 뒤 removeAll 을 호출해야 한다.
+	 */
+	public List<Long> peekExpired(LocalDateTime now, int max) {
+		List<Long> expired = new ArrayList<>();
+		for (Entry entry : queue) {
+			if (expired.size() >= max || entry.expireAt.isAfter(now))
+				break;
+			expired.add(entry.postId);
+		}
+		return expired;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int backlog(LocalDateTime now) {
+		return queue.headSet(new Entry(now, Long.MAX_VALUE), true).size();
+	}
+
+	public long lagSeconds(LocalDateTime now) {
+		if (queue.isEmpty())
+			return 0;
+		Entry head = queue.first();
+		if (head.expireAt.isAfter(now))
+			return 0;
+		return Duration.between(head.expireAt, now).getSeconds();
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		private final LocalDateTime expireAt;
+		private final long postId;
+
+		private Entry(LocalDateTime expireAt, long postId) {
+			this.expireAt = expireAt;
+			this.postId = postId;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int result = expireAt.compareTo(other.expireAt);
+			if (result != 0)
+				return result;
+			return Long.compare(postId, other.postId);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry))
+				return false;
+			Entry other = (Entry) o;
+			return postId == other.postId && expireAt.equals(other.expireAt);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * expireAt.hashCode() + Long.hashCode(postId);
+		}
+	}
+}
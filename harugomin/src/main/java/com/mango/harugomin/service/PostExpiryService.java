@@ -0,0 +1,185 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.repository.PostRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLDataException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 게시 시간이 지난 고민글을 별도 스레드에서 배치로 보관함(History)에 옮긴다.
+ * 조회 API 에서는 더 이상 보관함 이동(쓰기)을 하지 않는다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class PostExpiryService {
+
+	private final PostService postService;
+	private final PostExpiryQueue postExpiryQueue;
+	private final PostRepository postRepository;
+	private final MeterRegistry meterRegistry;
+
+	@Value("${hago.expiry.interval-seconds:10}")
+	private long intervalSeconds;
+	@Value("${hago.expiry.batch-size:100}")
+	private int batchSize;
+	@Value("${hago.expiry.retry.base-seconds:10}")
+	private long retryBaseSeconds;
+	@Value("${hago.expiry.retry.max-seconds:600}")
+	private long retryMaxSeconds;
+
+	private final Map<Long, Integer> attempts = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService executor;
+	private Counter archivedCounter;
+	private Counter failedCounter;
+	private Counter droppedCounter;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		for (Object[] row : postRepository.findAllCreatedDates()) {
+			postExpiryQueue.register(((Number) row[0]).longValue(), toLocalDateTime(row[1]));
+		}
+		log.info("Post expiry queue loaded ::: {} posts", postExpiryQueue.size());
+
+		Gauge.builder("hago.expiry.queue.size", postExpiryQueue, PostExpiryQueue::size)
+			.register(meterRegistry);
+		Gauge.builder("hago.expiry.backlog", postExpiryQueue, queue -> queue.backlog(LocalDateTime.now()))
+			.register(meterRegistry);
+		Gauge.builder("hago.expiry.lag.seconds", postExpiryQueue, queue -> queue.lagSeconds(LocalDateTime.now()))
+			.register(meterRegistry);
+		Gauge.builder("hago.expiry.retrying", attempts, Map::size)
+			.register(meterRegistry);
+		archivedCounter = meterRegistry.counter("hago.expiry.archived");
+		failedCounter = meterRegistry.counter("hago.expiry.failed");
+		droppedCounter = meterRegistry.counter("hago.expiry.dropped");
+
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "post-expiry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::expirePosts, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (executor != null)
+			executor.shutdown();
+	}
+
+	/**
+	 * 연결 끊김이나 타임아웃처럼 일시적인 실패면 배치의 글을 글마다 늘어나는 간격만큼 미뤄 다시 시도한다.
+	 * 제약 조건 위반처럼 글 자체의 문제로 실패하면 한 건씩 나눠 옮기고, 혼자서도 같은 이유로 실패하는 글만 큐에서 뺀다.
+	 * 미룬 글은 만료 시각이 뒤로 밀리므로 뒤의 글들은 계속 보관함으로 옮겨진다.
+	 */
+	public void expirePosts() {
+		LocalDateTime now = LocalDateTime.now();
+		List<Long> expired = postExpiryQueue.peekExpired(now, batchSize);
+		while (!expired.isEmpty()) {
+			Exception failure = archive(expired);
+			if (failure != null) {
+				if (!isDeterministic(failure)) {
+					postpone(expired, now);
+					return;
+				}
+				if (!archiveOneByOne(expired, now))
+					return;
+			}
+			expired = postExpiryQueue.peekExpired(now, batchSize);
+		}
+	}
+
+	/**
+	 * 성공하면 null, 실패하면 그 예외.
+	 */
+	private Exception archive(List<Long> expired) {
+		try {
+			postService.postsToHistory(expired);
+		} catch (Exception e) {
+			failedCounter.increment();
+			log.error("Post expiry batch failed ::: {} {}", expired, e.getMessage(), e);
+			return e;
+		}
+		postExpiryQueue.removeAll(expired);
+		archivedCounter.increment(expired.size());
+		for (Long postId : expired) {
+			attempts.remove(postId);
+		}
+		return null;
+	}
+
+	/**
+	 * 일시적인 실패를 만나면 남은 글을 미루고 false 를 돌려 이번 주기를 끝낸다.
+	 */
+	private boolean archiveOneByOne(List<Long> expired, LocalDateTime now) {
+		for (int i = 0; i < expired.size(); i++) {
+			Long postId = expired.get(i);
+			Exception failure = archive(Collections.singletonList(postId));
+			if (failure == null)
+				continue;
+			if (!isDeterministic(failure)) {
+				postpone(expired.subList(i, expired.size()), now);
+				return false;
+			}
+			postExpiryQueue.remove(postId);
+			attempts.remove(postId);
+			droppedCounter.increment();
+			log.error("Post expiry gave up ::: {}", postId);
+		}
+		return true;
+	}
+
+	private void postpone(List<Long> postIds, LocalDateTime now) {
+		for (Long postId : postIds) {
+			postExpiryQueue.postpone(postId, now.plusSeconds(backoffSeconds(attempts.merge(postId, 1, Integer::sum))));
+		}
+	}
+
+	private long backoffSeconds(int attempt) {
+		return Math.min(retryBaseSeconds << Math.min(attempt - 1, 16), retryMaxSeconds);
+	}
+
+	/**
+	 * 다시 시도해도 같은 결과가 나올 실패인지. 제약 조건 위반과 잘못된 값만 해당한다.
+	 */
+	private static boolean isDeterministic(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof DataIntegrityViolationException
+				|| cause instanceof SQLIntegrityConstraintViolationException
+				|| cause instanceof SQLDataException)
+				return true;
+			if (cause.getCause() == cause)
+				break;
+		}
+		return false;
+	}
+
+	private LocalDateTime toLocalDateTime(Object value) {
+		if (value instanceof LocalDateTime)
+			return (LocalDateTime) value;
+		if (value instanceof Timestamp)
+			return ((Timestamp) value).toLocalDateTime();
+		return null;
+	}
+}
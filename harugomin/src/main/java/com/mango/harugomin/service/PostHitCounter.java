@@ -0,0 +1,81 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.repository.PostRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 고민글 조회수를 메모리에 모아 두고 주기적으로 묶어서 post.hits 에 반영한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class PostHitCounter {
+
+	private final PostRepository postRepository;
+	private final PostDetailCache postDetailCache;
+	private final PostRanking postRanking;
+	private final DeltaBuffer hits = new DeltaBuffer();
+
+	public void hit(Long postId) {
+		hits.add(postId, 1);
+		postRanking.addHits(postId, 1);
+	}
+
+	/**
+	 * 아직 DB 에 반영되지 않은 조회수
+	 */
+	public int pending(Long postId) {
+		return (int) hits.pending(postId);
+	}
+
+	/**
+	 * 보관함 이동, 삭제 시 해당 글들의 미반영 조회수를 꺼내고 버퍼에서 제거한다. 트랜잭션이 롤백되면 다시 넣는다.
+	 */
+	public Map<Long, Long> take(Collection<Long> postIds) {
+		Map<Long, Long> taken = new HashMap<>();
+		for (Long postId : postIds) {
+			long delta = hits.drain(postId);
+			if (delta != 0)
+				taken.put(postId, delta);
+		}
+		if (!taken.isEmpty())
+			AfterCommit.onRollback(() -> hits.restore(taken));
+		return taken;
+	}
+
+	@Scheduled(fixedDelayString = "${hago.hits.flush-interval-ms:5000}")
+	public void flush() {
+		Map<Long, Long> drained = hits.drain();
+		if (drained.isEmpty())
+			return;
+
+		Map<Long, Long> failed = new HashMap<>();
+		for (Map.Entry<Long, List<Long>> group : DeltaBuffer.groupByDelta(drained).entrySet()) {
+			try {
+				postRepository.addHits(group.getKey().intValue(), group.getValue());
+				// 캐시된 상세 조회 결과의 조회수는 DB 기준이므로 반영한 만큼 같이 올린다.
+				postDetailCache.addHits(group.getValue(), group.getKey());
+			} catch (Exception e) {
+				log.error("Post hits flush error ::: {}", e.getMessage());
+				for (Long postId : group.getValue()) {
+					failed.put(postId, group.getKey());
+				}
+			}
+		}
+		hits.restore(failed);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+	}
+}
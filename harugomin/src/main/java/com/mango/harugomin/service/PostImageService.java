@@ -0,0 +1,50 @@
+package com.mango.harugomin.service;
+
+import com.google.gson.JsonObject;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 고민글 사진을 LocalBlobStore 에 저장하고 변형 이미지 생성을 예약한다. 응답에는 원본과 변형 이미지 key 를 담는다.
+ */
+@RequiredArgsConstructor
+@Service
+public class PostImageService {
+
+	private final LocalBlobStore localBlobStore;
+	private final ImageVariantService imageVariantService;
+
+	public String store(InputStream in, String extension) throws IOException {
+		return stored(localBlobStore.store(in, extension));
+	}
+
+	public String store(Path file, String extension) throws IOException {
+		return stored(localBlobStore.store(file, extension));
+	}
+
+	private String stored(String imagePath) {
+		boolean generated = localBlobStore.exists(ImageVariantService.variantKeys(imagePath).get(ImageVariantService.DETAIL));
+		if (!generated) {
+			FileSystemResource original = new FileSystemResource(localBlobStore.resolve(imagePath));
+			generated = imageVariantService.isSupported(original)
+				&& imageVariantService.submit(imagePath, original, localBlobStore::storeVariant);
+		}
+
+		JsonObject variantPaths = new JsonObject();
+		for (Map.Entry<String, String> variant : ImageVariantService.variantKeys(imagePath, generated).entrySet()) {
+			variantPaths.addProperty(variant.getKey(), variant.getValue());
+		}
+		JsonObject data = new JsonObject();
+		data.addProperty("imgPath", imagePath);
+		data.add("variants", variantPaths);
+		data.addProperty("status", String.valueOf(HttpStatus.OK));
+		return data.toString();
+	}
+}
@@ -0,0 +1,292 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.entity.Post;
+import com.mango.harugomin.domain.repository.PostRepository;
+import com.mango.harugomin.domain.repository.UserHashtagRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 메인 고민글 선정을 위한 조회수 랭킹.
+ * 게시중인 글마다 DB 조회수에 아직 반영되지 않은 조회수까지 더한 값을 두고, 해시태그별/전체 top-K 를 조회수가 오를 때마다 고쳐 둔다.
+ * K 번째보다 낮은 글의 조회는 락 없이 점수만 올리고, top-K 에 든 글이 빠질 때만 해당 목록을 다시 고른다.
+ * 사용자별 관심 해시태그는 작은 배열로 캐시해 두고, 선정은 관심 태그들의 top-K 목록을 병합해서 한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class PostRanking {
+
+	private static final int TOP_K = 15;
+	private static final int MAX_CACHED_USERS = 10000;
+
+	private final PostRepository postRepository;
+	private final UserHashtagRepository userHashtagRepository;
+
+	private final ConcurrentHashMap<Long, RankedPost> posts = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Board> boards = new ConcurrentHashMap<>();
+	private final Board all = new Board();
+
+	private final Map<Long, String[]> interests = Collections.synchronizedMap(new LinkedHashMap<Long, String[]>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+			return size() > MAX_CACHED_USERS;
+		}
+	});
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		for (Object[] row : postRepository.findAllRankings()) {
+			Long postId = ((Number) row[0]).longValue();
+			posts.put(postId, new RankedPost((String) row[1], ((Number) row[2]).longValue()));
+		}
+		synchronized (this) {
+			for (Map.Entry<Long, RankedPost> entry : posts.entrySet()) {
+				String tagName = entry.getValue().tagName;
+				if (tagName != null)
+					boards.computeIfAbsent(tagName, key -> new Board()).postIds.add(entry.getKey());
+			}
+			for (Board board : boards.values()) {
+				rebuild(board, board.postIds);
+			}
+			rebuild(all, posts.keySet());
+		}
+		log.info("Post ranking loaded ::: {} posts, {} hashtags", posts.size(), boards.size());
+	}
+
+	public synchronized void add(Post post) {
+		Long postId = post.getPostId();
+		RankedPost previous = posts.get(postId);
+		if (previous != null && Objects.equals(previous.tagName, post.getTagName()))
+			return;
+		long hits = previous == null ? post.getHits() : previous.hits.get();
+		RankedPost current = new RankedPost(post.getTagName(), hits);
+		posts.put(postId, current);
+		if (previous != null)
+			leave(postId, previous);
+		if (current.tagName != null) {
+			Board board = boards.computeIfAbsent(current.tagName, key -> new Board());
+			board.postIds.add(postId);
+			update(board, postId, hits);
+		}
+		update(all, postId, hits);
+	}
+
+	/**
+	 * PostHitCounter 가 조회를 받을 때마다 부른다. 조회수를 따로 모으지 않고 점수만 올리므로
+	 * 점수는 항상 DB 조회수와 PostHitCounter 의 미반영 조회수를 더한 값과 같다.
+	 */
+	public void addHits(Long postId, long delta) {
+		RankedPost post = posts.get(postId);
+		if (post == null)
+			return;
+		long hits = post.hits.addAndGet(delta);
+		Board board = post.tagName == null ? null : boards.get(post.tagName);
+		boolean inTag = board != null && hits >= board.threshold;
+		boolean inAll = hits >= all.threshold;
+		if (!inTag && !inAll)
+			return;
+		synchronized (this) {
+			if (posts.get(postId) != post)
+				return;
+			if (inTag)
+				update(board, postId, post.hits.get());
+			if (inAll)
+				update(all, postId, post.hits.get());
+		}
+	}
+
+	public void remove(Long postId) {
+		removeAll(Collections.singletonList(postId));
+	}
+
+	public synchronized void removeAll(Collection<Long> postIds) {
+		for (Long postId : postIds) {
+			RankedPost post = posts.remove(postId);
+			if (post != null)
+				leave(postId, post);
+		}
+	}
+
+	/**
+	 * 관심 해시태그가 바뀐 사용자. 트랜잭션 안에서 부르면 커밋 뒤에 버린다.
+	 */
+	public void evictInterests(Long userId) {
+		AfterCommit.run(() -> interests.remove(userId));
+	}
+
+	/**
+	 * 관심 해시태그가 있는 사용자는 해당 태그의 인기글을 우선으로, 나머지는 전체 인기글로 채운다.
+	 */
+	public List<Long> selectMainPosts(Long userId, int count) {
+		List<Long> result = new ArrayList<>();
+
+		if (userId != null && userId != -1) {
+			PriorityQueue<TagCursor> merge = new PriorityQueue<>();
+			for (String tagName : interestsOf(userId)) {
+				List<Ranked> top = topOf(tagName);
+				if (!top.isEmpty())
+					merge.add(new TagCursor(top));
+			}
+			while (result.size() < count && !merge.isEmpty()) {
+				TagCursor cursor = merge.poll();
+				Ranked ranked = cursor.current();
+				if (posts.containsKey(ranked.postId) && !result.contains(ranked.postId))
+					result.add(ranked.postId);
+				if (cursor.next())
+					merge.add(cursor);
+			}
+		}
+
+		for (Ranked ranked : topOf(null)) {
+			if (result.size() >= count)
+				break;
+			if (posts.containsKey(ranked.postId) && !result.contains(ranked.postId))
+				result.add(ranked.postId);
+		}
+		return result;
+	}
+
+	/**
+	 * tagName 이 null 이면 전체 top-K
+	 */
+	private synchronized List<Ranked> topOf(String tagName) {
+		Board board = tagName == null ? all : boards.get(tagName);
+		return board == null ? Collections.emptyList() : new ArrayList<>(board.top);
+	}
+
+	private String[] interestsOf(Long userId) {
+		String[] tagNames = interests.get(userId);
+		if (tagNames == null) {
+			List<String> names = userHashtagRepository.findTagNamesByUserId(userId);
+			tagNames = new String[names.size()];
+			for (int i = 0; i < names.size(); i++) {
+				tagNames[i] = names.get(i).intern();
+			}
+			interests.put(userId, tagNames);
+		}
+		return tagNames;
+	}
+
+	/**
+	 * 글의 점수가 hits 로 바뀌었을 때 board 의 top-K 를 고친다. 점수는 오르기만 하므로 밖에 있던 글과 자리만 바꾸면 된다.
+	 */
+	private void update(Board board, Long postId, long hits) {
+		Ranked previous = board.ranks.get(postId);
+		if (previous != null) {
+			board.top.remove(previous);
+		} else if (board.top.size() >= TOP_K) {
+			if (board.top.last().compareTo(new Ranked(postId, hits)) >= 0)
+				return;
+			board.ranks.remove(board.top.pollLast().postId);
+		}
+		Ranked ranked = new Ranked(postId, hits);
+		board.top.add(ranked);
+		board.ranks.put(postId, ranked);
+		board.refreshThreshold();
+	}
+
+	/**
+	 * 글이 빠지거나 해시태그가 바뀌면 board 에서 뺀다. top-K 에 있던 글이면 남은 글에서 다시 고른다.
+	 */
+	private void leave(Long postId, RankedPost post) {
+		if (post.tagName != null) {
+			Board board = boards.get(post.tagName);
+			if (board != null) {
+				board.postIds.remove(postId);
+				if (board.postIds.isEmpty())
+					boards.remove(post.tagName);
+				else if (board.ranks.containsKey(postId))
+					rebuild(board, board.postIds);
+			}
+		}
+		if (all.ranks.containsKey(postId))
+			rebuild(all, posts.keySet());
+	}
+
+	private void rebuild(Board board, Collection<Long> postIds) {
+		board.top.clear();
+		board.ranks.clear();
+		board.refreshThreshold();
+		for (Long postId : postIds) {
+			RankedPost post = posts.get(postId);
+			if (post != null)
+				update(board, postId, post.hits.get());
+		}
+	}
+
+	/**
+	 * 해시태그 하나 또는 전체의 top-K. top 은 조회수 내림차순이다.
+	 */
+	private static class Board {
+		private final Set<Long> postIds = new HashSet<>();
+		private final TreeSet<Ranked> top = new TreeSet<>(Collections.reverseOrder());
+		private final Map<Long, Ranked> ranks = new HashMap<>();
+		// top-K 에 들려면 넘어야 하는 조회수. 락 없이 읽어 대부분의 조회를 걸러 낸다.
+		private volatile long threshold = Long.MIN_VALUE;
+
+		private void refreshThreshold() {
+			threshold = top.size() < TOP_K ? Long.MIN_VALUE : top.last().hits;
+		}
+	}
+
+	private static class RankedPost {
+		private final String tagName;
+		private final AtomicLong hits;
+
+		private RankedPost(String tagName, long hits) {
+			this.tagName = tagName;
+			this.hits = new AtomicLong(hits);
+		}
+	}
+
+	/**
+	 * 조회수 오름차순 정렬. 동률이면 먼저 쓴 글을 더 높게 친다. Board 는 이를 뒤집어 내림차순으로 쓴다.
+	 */
+	private static class Ranked implements Comparable<Ranked> {
+		private final long postId;
+		private final long hits;
+
+		private Ranked(long postId, long hits) {
+			this.postId = postId;
+			this.hits = hits;
+		}
+
+		@Override
+		public int compareTo(Ranked other) {
+			int result = Long.compare(hits, other.hits);
+			if (result != 0)
+				return result;
+			return Long.compare(other.postId, postId);
+		}
+	}
+
+	private static class TagCursor implements Comparable<TagCursor> {
+		private final List<Ranked> top;
+		private int index;
+
+		private TagCursor(List<Ranked> top) {
+			this.top = top;
+		}
+
+		private Ranked current() {
+			return top.get(index);
+		}
+
+		private boolean next() {
+			return ++index < top.size();
+		}
+
+		@Override
+		public int compareTo(TagCursor other) {
+			return other.current().compareTo(current());
+		}
+	}
+}
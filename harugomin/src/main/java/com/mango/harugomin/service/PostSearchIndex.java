@@ -0,0 +1,253 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.entity.Post;
+import com.mango.harugomin.domain.repository.PostRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 게시중인 고민글의 제목/내용을 글자 단위 2-gram, 3-gram 으로 쪼개 만든 역색인.
+ * 형태소 분석 없이 한글 부분 검색이 되고, LIKE 검색처럼 LOB 컬럼을 전부 읽지 않는다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class PostSearchIndex {
+
+	private static final int TITLE = 1;
+	private static final int CONTENT = 2;
+	private static final int TITLE_WEIGHT = 2;
+	private static final int CONTENT_WEIGHT = 1;
+
+	private final PostRepository postRepository;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+	private final Map<Long, Document> documents = new HashMap<>();
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		List<Post> posts = postRepository.findAll();
+		for (Post post : posts) {
+			index(post);
+		}
+		log.info("Post search index loaded ::: {} posts, {} grams", size(), gramCount());
+	}
+
+	public void index(Post post) {
+		index(post.getPostId(), post.getTitle(), post.getContent(), post.getCreatedDate());
+	}
+
+	public void index(Long postId, String title, String content, LocalDateTime createdDate) {
+		Map<String, Integer> fields = new HashMap<>();
+		for (String gram : tokenize(title)) {
+			fields.merge(gram, TITLE, (a, b) -> a | b);
+		}
+		for (String gram : tokenize(content)) {
+			fields.merge(gram, CONTENT, (a, b) -> a | b);
+		}
+
+		lock.writeLock().lock();
+		try {
+			removeDocument(postId);
+			for (Map.Entry<String, Integer> field : fields.entrySet()) {
+				postings.computeIfAbsent(field.getKey(), gram -> new HashMap<>()).put(postId, field.getValue());
+			}
+			documents.put(postId, new Document(fields.keySet(), createdDate));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(Long postId) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(postId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void removeAll(Collection<Long> postIds) {
+		lock.writeLock().lock();
+		try {
+			for (Long postId : postIds) {
+				removeDocument(postId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 검색어의 모든 gram 을 포함하는 글을 점수(제목 가중치 포함), 작성일 역순으로 정렬해 반환한다.
+	 * 한 글자 단어는 문서에서 홀로 쓰였을 때만 gram 이 되므로, 검색어에서는 gram 대신 글자를 포함하는지로 찾는다.
+	 */
+	public SearchResult search(String keyword, int offset, int limit) {
+		Set<String> queryGrams = tokenize(keyword);
+		if (queryGrams.isEmpty())
+			return new SearchResult(Collections.emptyList(), 0);
+		Set<String> characters = new HashSet<>();
+		for (String gram : queryGrams) {
+			if (gram.length() == 1)
+				characters.add(gram);
+		}
+		queryGrams.removeAll(characters);
+
+		lock.readLock().lock();
+		try {
+			Map<Long, Integer> scores = score(queryGrams, characters);
+
+			List<Long> ranked = new ArrayList<>(scores.keySet());
+			ranked.sort((a, b) -> {
+				int result = Integer.compare(scores.get(b), scores.get(a));
+				if (result != 0)
+					return result;
+				LocalDateTime left = documents.get(a).createdDate;
+				LocalDateTime right = documents.get(b).createdDate;
+				if (left != null && right != null && !left.equals(right))
+					return right.compareTo(left);
+				return Long.compare(b, a);
+			});
+
+			int from = Math.min(Math.max(offset, 0), ranked.size());
+			int to = Math.min(from + limit, ranked.size());
+			return new SearchResult(new ArrayList<>(ranked.subList(from, to)), ranked.size());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documents.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int gramCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	static Set<String> tokenize(String text) {
+		Set<String> grams = new HashSet<>();
+		if (text == null)
+			return grams;
+		for (String word : text.toLowerCase().split("\\s+")) {
+			if (word.length() == 1) {
+				grams.add(word);
+				continue;
+			}
+			for (int n = 2; n <= 3; n++) {
+				for (int i = 0; i + n <= word.length(); i++) {
+					grams.add(word.substring(i, i + n));
+				}
+			}
+		}
+		return grams;
+	}
+
+	private Map<Long, Integer> score(Set<String> queryGrams, Set<String> characters) {
+		Map<Long, Integer> scores = queryGrams.isEmpty() ? null : scoreAllGrams(queryGrams);
+		for (String character : characters) {
+			Map<Long, Integer> matched = scoreSingleCharacter(character);
+			scores = scores == null ? matched : intersect(scores, matched);
+		}
+		return scores;
+	}
+
+	private Map<Long, Integer> scoreAllGrams(Set<String> queryGrams) {
+		Map<Long, Integer> scores = new HashMap<>();
+		Map<Long, Integer> matched = new HashMap<>();
+		for (String gram : queryGrams) {
+			Map<Long, Integer> posting = postings.get(gram);
+			if (posting == null)
+				return new HashMap<>();
+			for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+				matched.merge(entry.getKey(), 1, Integer::sum);
+				scores.merge(entry.getKey(), weight(entry.getValue()), Integer::sum);
+			}
+		}
+		scores.keySet().removeIf(postId -> matched.get(postId) < queryGrams.size());
+		return scores;
+	}
+
+	private Map<Long, Integer> scoreSingleCharacter(String character) {
+		Map<Long, Integer> scores = new HashMap<>();
+		for (Map.Entry<String, Map<Long, Integer>> posting : postings.entrySet()) {
+			if (!posting.getKey().contains(character))
+				continue;
+			for (Map.Entry<Long, Integer> entry : posting.getValue().entrySet()) {
+				scores.merge(entry.getKey(), weight(entry.getValue()), Integer::sum);
+			}
+		}
+		return scores;
+	}
+
+	private Map<Long, Integer> intersect(Map<Long, Integer> scores, Map<Long, Integer> matched) {
+		scores.keySet().retainAll(matched.keySet());
+		for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+			entry.setValue(entry.getValue() + matched.get(entry.getKey()));
+		}
+		return scores;
+	}
+
+	private int weight(int fields) {
+		int weight = 0;
+		if ((fields & TITLE) != 0)
+			weight += TITLE_WEIGHT;
+		if ((fields & CONTENT) != 0)
+			weight += CONTENT_WEIGHT;
+		return weight;
+	}
+
+	private void removeDocument(Long postId) {
+		Document document = documents.remove(postId);
+		if (document == null)
+			return;
+		for (String gram : document.grams) {
+			Map<Long, Integer> posting = postings.get(gram);
+			if (posting == null)
+				continue;
+			posting.remove(postId);
+			if (posting.isEmpty())
+				postings.remove(gram);
+		}
+	}
+
+	private static class Document {
+		private final Set<String> grams;
+		private final LocalDateTime createdDate;
+
+		private Document(Set<String> grams, LocalDateTime createdDate) {
+			this.grams = grams;
+			this.createdDate = createdDate;
+		}
+	}
+
+	@Getter
+	public static class SearchResult {
+		private final List<Long> postIds;
+		private final int total;
+
+		public SearchResult(List<Long> postIds, int total) {
+			this.postIds = postIds;
+			this.total = total;
+		}
+	}
+}
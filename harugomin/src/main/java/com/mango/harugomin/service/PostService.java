@@ -2,22 +2,30 @@ package com.mango.harugomin.service;
 
 import com.mango.harugomin.domain.entity.*;
 import com.mango.harugomin.domain.repository.*;
+import com.mango.harugomin.dto.CursorResponseDto;
+import com.mango.harugomin.dto.CommentSnapshotDto;
+import com.mango.harugomin.dto.HistoryDetailResponseDto;
+import com.mango.harugomin.dto.HistoryResponseDto;
+import com.mango.harugomin.dto.KeysetCursor;
 import com.mango.harugomin.dto.PostResponseDto;
 import com.mango.harugomin.dto.PostSaveRequestDto;
+import com.mango.harugomin.dto.SliceResponseDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RequiredArgsConstructor
@@ -29,14 +37,27 @@ public class PostService {
 	private final HistoryRepository historyRepository;
 	private final PostRepository postRepository;
 	private final LikerRepository likerRepository;
+	private final CommentRepository commentRepository;
+	private final PostExpiryQueue postExpiryQueue;
+	private final PostHitCounter postHitCounter;
+	private final PostSearchIndex postSearchIndex;
+	private final PostRanking postRanking;
+	private final StoryFeed storyFeed;
+	private final HashtagLeaderboard hashtagLeaderboard;
+	private final PostDetailCache postDetailCache;
+	private final HistoryService historyService;
+	private final CommentSnapshotCodec commentSnapshotCodec;
+	private final CommentLikeCounter commentLikeCounter;
+	private final CommentPageCache commentPageCache;
+	private final BestCommentIndex bestCommentIndex;
 
 	@Transactional
 	public Post save(PostSaveRequestDto requestDto) {
 		User user = userRepository.findById(requestDto.getUserId()).get();
-		Hashtag hashtag = hashtagRepository.findByTagName(requestDto.getTagName());
-		hashtagRepository.countUp(hashtag.getTagId());
+		if (!hashtagLeaderboard.contains(requestDto.getTagName()))
+			hashtagLeaderboard.register(hashtagRepository.findByTagName(requestDto.getTagName()));
 
-		return postRepository.save(Post.builder()
+		Post post = postRepository.save(Post.builder()
 			.user(user)
 			.title(requestDto.getTitle())
 			.content(requestDto.getContent())
@@ -46,6 +67,15 @@ public class PostService {
 			.commentNum(0)
 			.build()
 		);
+		// 메모리 인덱스는 커밋된 글만 보도록 커밋 뒤에 넣는다.
+		AfterCommit.run(() -> {
+			hashtagLeaderboard.countUp(post.getTagName());
+			postExpiryQueue.register(post.getPostId(), post.getCreatedDate());
+			postSearchIndex.index(post);
+			postRanking.add(post);
+			storyFeed.add(post);
+		});
+		return post;
 	}
 
 	@Transactional
@@ -62,6 +92,11 @@ public class PostService {
 	public Post updatePost(PostSaveRequestDto requestDto) {
 		Post post = postRepository.findById(requestDto.getPostId()).get();
 		post.update(requestDto.getTitle(), requestDto.getContent(), requestDto.getTagName(), requestDto.getPostImage());
+		AfterCommit.run(() -> {
+			postSearchIndex.index(post);
+			postRanking.add(post);
+		});
+		postDetailCache.evict(post.getPostId());
 		return post;
 	}
 
@@ -70,164 +105,201 @@ public class PostService {
 		Optional<Post> post = postRepository.findById(postId);
 		if (!post.isPresent())
 			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
-		postRepository.delete(post.get());
+		List<Long> postIds = Collections.singletonList(postId);
+		likerRepository.deleteAllByPostIdIn(postIds);
+		commentRepository.deleteAllByPostIdIn(postIds);
+		postRepository.deleteAllByPostIdIn(postIds);
+		evictDeletedPosts(postIds);
 		return new ResponseEntity(HttpStatus.OK);
 	}
 
+	/**
+	 * DB 에서 지운 글을 메모리 인덱스와 캐시에서 뺀다. 미반영 조회수는 버린다. 트랜잭션 안에서 부르면 커밋 뒤에 뺀다.
+	 */
+	public void evictDeletedPosts(List<Long> postIds) {
+		postHitCounter.take(postIds);
+		evictPosts(postIds);
+	}
+
+	private void evictPosts(List<Long> postIds) {
+		// 롤백되면 글이 그대로 남으므로 메모리 인덱스에서도 커밋 뒤에만 뺀다.
+		AfterCommit.run(() -> {
+			postExpiryQueue.removeAll(postIds);
+			postSearchIndex.removeAll(postIds);
+			postRanking.removeAll(postIds);
+			storyFeed.removeAll(postIds);
+		});
+		postDetailCache.evictAll(postIds);
+		commentPageCache.evictAll(postIds);
+		bestCommentIndex.evictAll(postIds);
+	}
+
 	@Transactional(readOnly = true)
 	public Page<Post> findAllPosts(PageRequest pageRequest) {
 		return postRepository.findAll(pageRequest);
 	}
 
-	@Transactional
+	@Transactional(readOnly = true)
 	public Optional<Post> findById(Long postId) {
-		postRepository.postHits(postId);
-		return postRepository.findById(postId);
+		return postRepository.findWithUserByPostId(postId);
 	}
 
 	public ResponseEntity getPostDetails(Long postId) {
-		Optional<Post> post = findById(postId);
-		if (!post.isPresent()) {
-			Optional<History> history = historyRepository.findById(postId);
-			if (!history.isPresent())
+		Object detail = postDetailCache.get(postId);
+		if (detail == null) {
+			detail = loadPostDetails(postId);
+			if (detail == null)
 				return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
-			return new ResponseEntity(history.get(), HttpStatus.OK);
-		}
-		PostResponseDto result = new PostResponseDto(post.get());
-		LocalDateTime currentTime = LocalDateTime.now();
-		Duration duration = Duration.between(post.get().getCreatedDate(), currentTime);
-		if (duration.getSeconds() >= 86300) {
-			postToHistory(post.get().getPostId());
 		}
+		if (detail instanceof HistoryResponseDto)
+			return new ResponseEntity(detail, HttpStatus.OK);
 
+		postHitCounter.hit(postId);
+		PostResponseDto result = new PostResponseDto((PostResponseDto) detail);
+		result.setHits(result.getHits() + postHitCounter.pending(postId));
 		return new ResponseEntity(result, HttpStatus.OK);
 	}
 
+	private Object loadPostDetails(Long postId) {
+		long generation = postDetailCache.generation();
+		Optional<Post> post = findById(postId);
+		if (post.isPresent()) {
+			PostResponseDto result = new PostResponseDto(post.get());
+			postDetailCache.put(postId, result, PostDetailCache.weigh(result.getTitle(), result.getContent()), generation);
+			return result;
+		}
+		Optional<HistoryDetailResponseDto> history = historyService.findById(postId);
+		if (!history.isPresent())
+			return null;
+		postDetailCache.put(postId, history.get(), PostDetailCache.weigh(history.get().getTitle(), history.get().getContent()), generation);
+		return history.get();
+	}
+
 	@Transactional(readOnly = true)
-	public Page<Post> findAllByHashtag(String tagName, PageRequest pageRequest) {
-		return postRepository.findAllByTagName(tagName, pageRequest);
+	public Slice<Post> findAllByHashtag(String tagName, PageRequest pageRequest) {
+		if (tagName.equals("전체"))
+			return postRepository.findSliceWithUser(pageRequest);
+		return postRepository.findSliceByTagName(tagName, pageRequest);
 	}
 
 	@Transactional
 	public void postToHistory(Long postId) {
-		Post post = postRepository.findById(postId).get();
-		History history = new History(post);
-		historyRepository.save(history);
-		likerRepository.deleteByComment_Post_PostId(postId);
-		postRepository.deleteById(post.getPostId());
+		postsToHistory(Collections.singletonList(postId));
 	}
 
-	public ResponseEntity getHashtagByPostingCount() {
-		PageRequest tagRequest = PageRequest.of(0, 12, Sort.by("postingCount").descending());
-		List<Hashtag> topTags = null;
-		topTags = hashtagRepository.findAll(tagRequest).getContent();
-		return new ResponseEntity(topTags, HttpStatus.OK);
+	/**
+	 * 배치 단위로 보관함에 옮긴다. 글마다 엔티티를 읽지 않고 INSERT ... SELECT 와 IN 절 DELETE 만 사용하므로
+	 * 댓글, 좋아요가 많은 글이어도 실행되는 문장 수는 같다.
+	 */
+	@Transactional
+	public void postsToHistory(List<Long> postIds) {
+		if (postIds.isEmpty())
+			return;
+		Map<Long, Long> pendingHits = postHitCounter.take(postIds);
+		for (Map.Entry<Long, List<Long>> group : DeltaBuffer.groupByDelta(pendingHits).entrySet()) {
+			postRepository.addHits(group.getKey().intValue(), group.getValue());
+		}
+
+		historyRepository.archivePosts(postIds);
+		snapshotComments(postIds);
+		likerRepository.deleteAllByPostIdIn(postIds);
+		commentRepository.deleteAllByPostIdIn(postIds);
+		postRepository.deleteAllByPostIdIn(postIds);
+
+		evictPosts(postIds);
 	}
 
-	public ResponseEntity getStoryPosts() {
-		LocalDateTime currentTime = LocalDateTime.now();
-		PageRequest storyRequest = PageRequest.of(0, 13, Sort.by("createdDate"));
-		List<Post> data = findAllPosts(storyRequest).getContent();
-		if (data == null)
-			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
+	/**
+	 * 배치의 댓글을 한 번에 읽어 글마다 압축된 스냅샷 하나로 History 에 저장한다. 댓글이 없는 글은 건너뛴다.
+	 * 댓글 행은 곧 지워지므로 미반영 좋아요 수는 DB 에 쓰지 않고 스냅샷에만 더한다.
+	 */
+	private void snapshotComments(List<Long> postIds) {
+		List<Object[]> rows = commentRepository.findAllWithPostIdByPostIdIn(postIds);
+		List<Long> commentIds = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			commentIds.add(((Comment) row[1]).getCommentId());
+		}
+		Map<Long, Long> pendingLikes = commentLikeCounter.take(commentIds);
 
-		List<Post> story = new ArrayList<>();
-		for (Post post : data) {
-			Duration duration = Duration.between(post.getCreatedDate(), currentTime);
-			if (duration.getSeconds() >= 86300) {
-				postToHistory(post.getPostId());
-				continue;
-			} else {
-				story.add(post);
-			}
-			if (story.size() >= 10)
-				break;
+		Map<Long, List<CommentSnapshotDto>> threads = new HashMap<>();
+		for (Object[] row : rows) {
+			CommentSnapshotDto comment = new CommentSnapshotDto((Comment) row[1]);
+			comment.setCommentLikes(comment.getCommentLikes() + pendingLikes.getOrDefault(comment.getCommentId(), 0L).intValue());
+			threads.computeIfAbsent((Long) row[0], postId -> new ArrayList<>()).add(comment);
+		}
+		for (Map.Entry<Long, List<CommentSnapshotDto>> thread : threads.entrySet()) {
+			historyRepository.updateCommentSnapshot(thread.getKey(), commentSnapshotCodec.encode(thread.getValue()));
 		}
-		return new ResponseEntity(story, HttpStatus.OK);
 	}
 
-	public ResponseEntity getPostsByHashtag(String tagName, int pageNum) {
-		Page<Post> result = null;
-		PageRequest pageRequest = null;
-		if (tagName.equals("전체")) {
-			pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
-			Page<Post> list = findAllPosts(pageRequest);
-			if (list.isEmpty())
-				return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
-			return new ResponseEntity(list.getContent(), HttpStatus.OK);
-		}
-		pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
-		result = findAllByHashtag(tagName, pageRequest);
-		if (result.isEmpty())
-			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
-		return new ResponseEntity(result.getContent(), HttpStatus.OK);
+	public ResponseEntity getHashtagByPostingCount() {
+		return new ResponseEntity(hashtagLeaderboard.getTop(), HttpStatus.OK);
 	}
 
-	public ResponseEntity searchPostsByKeyword(String keyword, int pageNum) {
-		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("created_date").descending());
-		Page<Post> result = null;
-		result = postRepository.searchAllPosts(keyword, pageRequest);
-		if (result.isEmpty())
+	public ResponseEntity getStoryPosts() {
+		return new ResponseEntity(findAllInOrder(storyFeed.getStory(LocalDateTime.now())), HttpStatus.OK);
+	}
+
+	public ResponseEntity getPostsByHashtag(String tagName, int pageNum) {
+		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
+		Slice<Post> result = findAllByHashtag(tagName, pageRequest);
+		if (!result.hasContent())
 			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
 		return new ResponseEntity(result.getContent(), HttpStatus.OK);
 	}
 
-	public ResponseEntity getMainPosts(Long userId) {
-		// 1. hit 많은 고민글 15개 조회
-		PageRequest pageRequest = PageRequest.of(0, 15, Sort.by("hits").descending());
-		Page<Post> data = null;
-		List<Post> result = new ArrayList<>();
-		int i = 0;
-		data = findAllPosts(pageRequest);
-
-		if(userId == null) {
-			while (result.size() < 3) {
-				result.add(data.getContent().get(i));
-				i++;
-			}
-			return new ResponseEntity<>(result, HttpStatus.OK);
-		}
+	public ResponseEntity getPostsByHashtagSlice(String tagName, int pageNum) {
+		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
+		return new ResponseEntity(new SliceResponseDto<>(findAllByHashtag(tagName, pageRequest)), HttpStatus.OK);
+	}
 
-		Optional<User> user = userRepository.findById(userId);
-		if (!user.isPresent()){
-			while (result.size() < 3) {
-				result.add(data.getContent().get(i));
-				i++;
-			}
-			return new ResponseEntity<>(result, HttpStatus.OK);
+	public ResponseEntity getPostsByHashtagByCursor(String tagName, String cursor) {
+		KeysetCursor keysetCursor = null;
+		try {
+			keysetCursor = KeysetCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
 		}
-		String userHashString = "";
-		List<UserHashtag> userHashtags = user.get().getUserHashtags();
+		PageRequest limit = PageRequest.of(0, 15 + 1);
+		List<Post> rows = null;
+		if (tagName.equals("전체"))
+			rows = postRepository.findAllBefore(keysetCursor.getCreatedDate(), keysetCursor.getId(), limit);
+		else
+			rows = postRepository.findAllByTagNameBefore(tagName, keysetCursor.getCreatedDate(), keysetCursor.getId(), limit);
+		return new ResponseEntity(CursorResponseDto.of(rows, 15, post -> new KeysetCursor(post.getCreatedDate(), post.getPostId())), HttpStatus.OK);
+	}
 
-		// 비로그인 사용자 또는 해시태그가 없는 사용자에게는 hit수 높은 고민글 3개 출력
-		if (userId == -1 || userHashtags.size() < 1) {
-			while (result.size() < 3) {
-				result.add(data.getContent().get(i));
-				i++;
-			}
-			return new ResponseEntity<>(result, HttpStatus.OK);
-		}
+	public ResponseEntity searchPostsByKeyword(String keyword, int pageNum) {
+		PostSearchIndex.SearchResult result = postSearchIndex.search(keyword, pageNum * 15, 15);
+		if (result.getPostIds().isEmpty())
+			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
+		return new ResponseEntity(findAllInOrder(result.getPostIds()), HttpStatus.OK);
+	}
 
-		for (UserHashtag userHashtag : userHashtags) {
-			userHashString += userHashtag.getHashtag().getTagName();
-		}
+	public ResponseEntity searchPostsByKeywordSlice(String keyword, int pageNum) {
+		PostSearchIndex.SearchResult result = postSearchIndex.search(keyword, pageNum * 15, 15);
+		boolean hasNext = (pageNum + 1) * 15 < result.getTotal();
+		return new ResponseEntity(new SliceResponseDto<>(findAllInOrder(result.getPostIds()), hasNext), HttpStatus.OK);
+	}
 
-		for (Post post : data.getContent()) {
-			if (result.size() > 2)
-				break;
-			if (userHashString.contains(post.getTagName())) {
-				result.add(post);
-			}
+	private List<Post> findAllInOrder(List<Long> postIds) {
+		if (postIds.isEmpty())
+			return new ArrayList<>();
+		Map<Long, Post> posts = new HashMap<>();
+		for (Post post : postRepository.findAllWithUserByPostIdIn(postIds)) {
+			posts.put(post.getPostId(), post);
 		}
-
-		for (Post post : data.getContent()) {
-			if (result.size() > 2)
-				break;
-			if (!result.contains(post)) {
-				result.add(post);
-			}
+		List<Post> result = new ArrayList<>();
+		for (Long postId : postIds) {
+			if (posts.containsKey(postId))
+				result.add(posts.get(postId));
 		}
+		return result;
+	}
 
-		return new ResponseEntity<>(result, HttpStatus.OK);
+	public ResponseEntity getMainPosts(Long userId) {
+		// 비로그인 사용자 또는 해시태그가 없는 사용자에게는 hit수 높은 고민글 3개 출력
+		List<Long> postIds = postRanking.selectMainPosts(userId, 3);
+		return new ResponseEntity<>(findAllInOrder(postIds), HttpStatus.OK);
 	}
 }
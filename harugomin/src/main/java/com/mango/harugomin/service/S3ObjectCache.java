@@ -0,0 +1,196 @@
+package com.mango.harugomin.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * S3 객체를 로컬 디스크에 캐시한다. 파일은 (key, ETag) 로 이름 붙이고 전체 크기가 maxBytes 를 넘으면 가장 오래 안 읽은 것부터 지운다.
+ * 같은 key 를 동시에 여러 스레드가 읽어도 S3 에서는 한 번만 받는다.
+ * revalidateAfterMillis 가 지난 항목은 ETag 조건부 GET 으로 바뀌었는지만 확인한다.
+ * 캐시 디렉토리는 시작할 때 비운다.
+ */
+@Slf4j
+public class S3ObjectCache {
+
+	@FunctionalInterface
+	public interface Fetcher {
+		/**
+		 * key 의 내용을 target 에 쓰고 ETag 를 돌려준다. currentEtag 와 같아서 받지 않았으면 null.
+		 */
+		String fetch(String key, String currentEtag, Path target) throws IOException;
+	}
+
+	private final Path dir;
+	private final long maxBytes;
+	private final long revalidateAfterMillis;
+	private final Fetcher fetcher;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private final ConcurrentHashMap<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+	private long bytes = 0;
+
+	public S3ObjectCache(Path dir, long maxBytes, long revalidateAfterMillis, Fetcher fetcher) throws IOException {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.revalidateAfterMillis = revalidateAfterMillis;
+		this.fetcher = fetcher;
+		clear();
+	}
+
+	public InputStream read(String key) throws IOException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry == null || System.currentTimeMillis() - entry.validatedAt > revalidateAfterMillis)
+			entry = load(key, entry);
+		try {
+			return Files.newInputStream(entry.path);
+		} catch (NoSuchFileException e) {
+			// 여는 사이에 밀려난 경우. 한 번 더 받는다.
+			return Files.newInputStream(load(key, null).path);
+		}
+	}
+
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private Entry load(String key, Entry current) throws IOException {
+		CompletableFuture<Entry> future = new CompletableFuture<>();
+		CompletableFuture<Entry> running = inflight.putIfAbsent(key, future);
+		if (running != null)
+			return await(running);
+
+		try {
+			future.complete(fetch(key, current));
+		} catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+		} finally {
+			inflight.remove(key, future);
+		}
+		return await(future);
+	}
+
+	private Entry fetch(String key, Entry current) throws IOException {
+		Path temp = Files.createTempFile(dir, "fetch-", ".part");
+		try {
+			String etag = fetcher.fetch(key, current == null ? null : current.etag, temp);
+			if (etag == null && current != null) {
+				current.validatedAt = System.currentTimeMillis();
+				return current;
+			}
+			if (etag == null)
+				throw new IOException("S3 object not fetched ::: " + key);
+
+			Path path = dir.resolve(fileName(key, etag));
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			Entry entry = new Entry(etag, path, Files.size(path));
+			put(key, entry);
+			return entry;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		Entry previous = entries.put(key, entry);
+		if (previous != null) {
+			bytes -= previous.size;
+			if (!previous.path.equals(entry.path))
+				deleteQuietly(previous.path);
+		}
+		bytes += entry.size;
+
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			if (eldest.getValue() == entry)
+				break;
+			iterator.remove();
+			bytes -= eldest.getValue().size;
+			deleteQuietly(eldest.getValue().path);
+		}
+	}
+
+	private void clear() throws IOException {
+		Files.createDirectories(dir);
+		try (Stream<Path> files = Files.list(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(S3ObjectCache::deleteQuietly);
+		}
+	}
+
+	private static Entry await(CompletableFuture<Entry> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof UncheckedIOException)
+				throw ((UncheckedIOException) cause).getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw e;
+		}
+	}
+
+	private static String fileName(String key, String etag) {
+		return sha256(key) + "-" + etag.replaceAll("[^0-9A-Za-z-]", "") + ".obj";
+	}
+
+	private static String sha256(String value) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			log.warn("Failed to delete cached S3 object ::: {}", path);
+		}
+	}
+
+	private static class Entry {
+		private final String etag;
+		private final Path path;
+		private final long size;
+		private volatile long validatedAt;
+
+		private Entry(String etag, Path path, long size) {
+			this.etag = etag;
+			this.path = path;
+			this.size = size;
+			this.validatedAt = System.currentTimeMillis();
+		}
+	}
+}
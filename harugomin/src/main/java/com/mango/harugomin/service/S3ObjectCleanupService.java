@@ -0,0 +1,116 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.entity.ObjectCleanup;
+import com.mango.harugomin.domain.repository.ObjectCleanupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 교체된 프로필 사진처럼 더 이상 쓰지 않는 S3 객체를 object_cleanup 테이블에 쌓아 두고,
+ * 사용자 요청과 상관없이 주기적으로 한 번에 최대 1000 개씩 multi-object delete 로 지운다.
+ * 실패한 key 는 대기 시간을 늘려 가며 다시 시도하고, max-attempts 를 넘으면 포기한다.
+ */
+@Slf4j
+@Service
+public class S3ObjectCleanupService {
+
+	private static final int MAX_KEYS_PER_REQUEST = 1000;
+
+	private final ObjectCleanupRepository objectCleanupRepository;
+	private final S3Service s3Service;
+	private final int maxAttempts;
+
+	private final Counter enqueuedCounter;
+	private final Counter deletedCounter;
+	private final Counter failedCounter;
+	private final Counter abandonedCounter;
+
+	public S3ObjectCleanupService(ObjectCleanupRepository objectCleanupRepository, S3Service s3Service, MeterRegistry meterRegistry,
+								  @Value("${hago.s3.cleanup.max-attempts:10}") int maxAttempts) {
+		this.objectCleanupRepository = objectCleanupRepository;
+		this.s3Service = s3Service;
+		this.maxAttempts = maxAttempts;
+		this.enqueuedCounter = meterRegistry.counter("hago.s3.cleanup.enqueued");
+		this.deletedCounter = meterRegistry.counter("hago.s3.cleanup.deleted");
+		this.failedCounter = meterRegistry.counter("hago.s3.cleanup.failed");
+		this.abandonedCounter = meterRegistry.counter("hago.s3.cleanup.abandoned");
+	}
+
+	/**
+	 * 저장된 이미지 경로를 정리 대상으로 등록한다. 변형 이미지도 함께 등록하고, 이 버킷의 객체가 아니면 무시한다.
+	 * 호출한 트랜잭션과 함께 커밋된다.
+	 */
+	public void enqueue(String path) {
+		String key = S3Service.keyOf(path);
+		if (key == null)
+			return;
+		List<ObjectCleanup> cleanups = new ArrayList<>();
+		cleanups.add(new ObjectCleanup(key));
+		for (String variantKey : ImageVariantService.variantKeys(key).values()) {
+			cleanups.add(new ObjectCleanup(variantKey));
+		}
+		objectCleanupRepository.saveAll(cleanups);
+		enqueuedCounter.increment(cleanups.size());
+	}
+
+	@Scheduled(fixedDelayString = "${hago.s3.cleanup.interval-ms:60000}")
+	public void cleanup() {
+		LocalDateTime now = LocalDateTime.now();
+		List<ObjectCleanup> due = objectCleanupRepository.findAllDue(now, PageRequest.of(0, MAX_KEYS_PER_REQUEST));
+		while (!due.isEmpty()) {
+			Map<String, List<Long>> idsByKey = new LinkedHashMap<>();
+			for (ObjectCleanup cleanup : due) {
+				idsByKey.computeIfAbsent(cleanup.getObjectKey(), key -> new ArrayList<>()).add(cleanup.getCleanupId());
+			}
+
+			Set<String> failedKeys;
+			try {
+				failedKeys = s3Service.deleteObjects(new ArrayList<>(idsByKey.keySet()));
+			} catch (Exception e) {
+				log.error("S3 cleanup batch failed ::: {}", e.getMessage());
+				failedKeys = idsByKey.keySet();
+			}
+
+			List<Long> done = new ArrayList<>();
+			List<Long> retry = new ArrayList<>();
+			int attempts = 0;
+			for (ObjectCleanup cleanup : due) {
+				if (!failedKeys.contains(cleanup.getObjectKey())) {
+					done.add(cleanup.getCleanupId());
+				} else if (cleanup.getAttempts() + 1 >= maxAttempts) {
+					log.warn("S3 cleanup abandoned after {} attempts ::: {}", maxAttempts, cleanup.getObjectKey());
+					abandonedCounter.increment();
+					done.add(cleanup.getCleanupId());
+				} else {
+					retry.add(cleanup.getCleanupId());
+					attempts = Math.max(attempts, cleanup.getAttempts() + 1);
+				}
+			}
+			deletedCounter.increment(idsByKey.size() - failedKeys.size());
+			failedCounter.increment(failedKeys.size());
+			if (!done.isEmpty())
+				objectCleanupRepository.deleteAllByCleanupIdIn(done);
+			if (!retry.isEmpty())
+				objectCleanupRepository.postpone(retry, now.plusSeconds(backoffSeconds(attempts)));
+			// 실패만 남은 배치는 postpone 으로 빠지므로 같은 행을 다시 읽지 않는다.
+			if (due.size() < MAX_KEYS_PER_REQUEST)
+				break;
+			due = objectCleanupRepository.findAllDue(now, PageRequest.of(0, MAX_KEYS_PER_REQUEST));
+		}
+	}
+
+	/**
+	 * 1분부터 두 배씩, 최대 6시간
+	 */
+	static long backoffSeconds(int attempts) {
+		return Math.min(60L << Math.min(attempts - 1, 20), 6 * 60 * 60L);
+	}
+}
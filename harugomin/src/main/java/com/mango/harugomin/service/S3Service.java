@@ -1,27 +1,52 @@
 package com.mango.harugomin.service;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
 
+@Slf4j
 @NoArgsConstructor
 @Service
 public class S3Service {
 	private AmazonS3 s3Client;
+	private TransferManager transferManager;
+	private S3ObjectCache objectCache;
 
 	@Value("${cloud.aws.credentials.accessKey}")
 	private String accessKey;
@@ -31,40 +56,162 @@ public class S3Service {
 	private String bucket;
 	@Value("${cloud.aws.region.static}")
 	private String region;
+	// 로컬 S3 호환 서버(minio 등)로 테스트할 때만 지정한다.
+	@Value("${cloud.aws.s3.endpoint:}")
+	private String endpoint;
+	@Value("${cloud.aws.s3.path-style-access:false}")
+	private boolean pathStyleAccess;
+	@Value("${hago.s3.multipart-threshold:16777216}")
+	private long multipartThreshold;
+	@Value("${hago.s3.part-size:8388608}")
+	private long partSize;
+	@Value("${hago.s3.upload-threads:4}")
+	private int uploadThreads;
+	@Value("${hago.s3.cache.dir:/home/ubuntu/hago/s3-cache/}")
+	private String cacheDir;
+	@Value("${hago.s3.cache.max-bytes:536870912}")
+	private long cacheMaxBytes;
+	@Value("${hago.s3.cache.revalidate-after-ms:3600000}")
+	private long cacheRevalidateAfterMillis;
 
 	public static final String CLOUD_FRONT_DOMAIN_NAME = "https://hago-bucket.s3.ap-northeast-2.amazonaws.com/";
 
 	@PostConstruct
-	public void setS3Client() {
+	public void setS3Client() throws IOException {
 		AWSCredentials credentials = new BasicAWSCredentials(this.accessKey, this.secretKey);
 
-		s3Client = AmazonS3ClientBuilder.standard()
+		AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
 			.withCredentials(new AWSStaticCredentialsProvider(credentials))
-			.withRegion(this.region)
+			.withPathStyleAccessEnabled(this.pathStyleAccess);
+		if (endpoint == null || endpoint.isEmpty())
+			builder.withRegion(this.region);
+		else
+			builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(this.endpoint, this.region));
+		s3Client = builder.build();
+
+		transferManager = TransferManagerBuilder.standard()
+			.withS3Client(s3Client)
+			.withMultipartUploadThreshold(multipartThreshold)
+			.withMinimumUploadPartSize(partSize)
+			.withExecutorFactory(() -> Executors.newFixedThreadPool(uploadThreads))
+			.withShutDownThreadPools(true)
 			.build();
+
+		objectCache = new S3ObjectCache(Paths.get(cacheDir), cacheMaxBytes, cacheRevalidateAfterMillis, this::fetch);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (transferManager != null)
+			transferManager.shutdownNow(false);
+	}
+
+	/**
+	 * 기존 파일은 여기서 지우지 않는다. 호출하는 쪽에서 S3ObjectCleanupService 에 등록한다.
+	 */
+	public String upload(MultipartFile file) throws IOException {
+		try (InputStream in = file.getInputStream()) {
+			return upload(in, file.getSize(), file.getContentType());
+		}
 	}
 
-	public String upload(String currentFilePath ,MultipartFile file) throws IOException {
+	public String upload(InputStream in, long size, String contentType) throws IOException {
 		// 고유한 key 값을 갖기 위해 현재 시간을 postfix로 붙여준다.
 		Random rand = new Random();
 		int randomInt = rand.nextInt();
 		SimpleDateFormat date = new SimpleDateFormat("yyyymmddHHmmss");
 		String fileName = randomInt + "-" + date.format(new Date());
 
-		// key가 존재하면 기존 파일은 삭제
-		if("".equals(currentFilePath) == false && currentFilePath != null) {
-			boolean isExistObject = s3Client.doesObjectExist(bucket, currentFilePath);
+		// 파일 업로드
+		upload(fileName, in, size, contentType);
 
-			if(isExistObject == true){
-				s3Client.deleteObject(bucket, currentFilePath);
-			}
+		return fileName;
+	}
+
+	/**
+	 * 길이를 알려 주고 스트림 그대로 올린다. 길이를 모르면 SDK 가 스트림 전체를 메모리에 버퍼링한다.
+	 * 임계값 이상은 TransferManager 가 파트를 나눠 병렬로 올린다.
+	 */
+	public void upload(String key, InputStream in, long size, String contentType) throws IOException {
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(size);
+		if (contentType != null)
+			metadata.setContentType(contentType);
+		PutObjectRequest request = new PutObjectRequest(bucket, key, in, metadata)
+			.withCannedAcl(CannedAccessControlList.PublicRead);
+
+		try {
+			if (size >= multipartThreshold)
+				transferManager.upload(request).waitForCompletion();
+			else
+				s3Client.putObject(request);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("S3 upload interrupted ::: " + key, e);
+		} catch (AmazonClientException e) {
+			throw new IOException("S3 upload failed ::: " + key, e);
 		}
+	}
 
-		// 파일 업로드
-		s3Client.putObject(new PutObjectRequest(bucket, fileName, file.getInputStream(), null)
-			.withCannedAcl(CannedAccessControlList.PublicRead));
+	public void uploadVariant(String key, byte[] data, String contentType) throws IOException {
+		upload(key, new ByteArrayInputStream(data), data.length, contentType);
+	}
 
-		return fileName;
+	/**
+	 * 로컬 디스크 캐시를 먼저 보고, 없으면 S3 에서 받아 캐시에 넣은 뒤 읽는다.
+	 */
+	public InputStream read(String key) throws IOException {
+		return objectCache.read(key);
 	}
 
+	private String fetch(String key, String currentEtag, Path target) throws IOException {
+		GetObjectRequest request = new GetObjectRequest(bucket, key);
+		if (currentEtag != null)
+			request.withNonmatchingETagConstraint(currentEtag);
+		try {
+			S3Object object = s3Client.getObject(request);
+			if (object == null)
+				return null;
+			try (S3Object opened = object; InputStream in = opened.getObjectContent()) {
+				Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+				return opened.getObjectMetadata().getETag();
+			}
+		} catch (AmazonClientException e) {
+			throw new IOException("S3 read failed ::: " + key, e);
+		}
+	}
+
+	/**
+	 * 여러 key 를 요청 한 번으로 지운다(최대 1000 개). 지우지 못한 key 를 돌려준다.
+	 */
+	public Set<String> deleteObjects(List<String> keys) {
+		if (keys.isEmpty())
+			return Collections.emptySet();
+		DeleteObjectsRequest request = new DeleteObjectsRequest(bucket)
+			.withKeys(keys.toArray(new String[0]))
+			.withQuiet(true);
+		try {
+			s3Client.deleteObjects(request);
+			return Collections.emptySet();
+		} catch (MultiObjectDeleteException e) {
+			Set<String> failed = new HashSet<>();
+			for (MultiObjectDeleteException.DeleteError error : e.getErrors()) {
+				log.warn("S3 delete failed ::: {} {}", error.getKey(), error.getCode());
+				failed.add(error.getKey());
+			}
+			return failed;
+		}
+	}
+
+	/**
+	 * 저장된 이미지 경로(CLOUD_FRONT_DOMAIN_NAME + key)에서 이 버킷의 key 를 꺼낸다. 다른 곳의 이미지나 기본 이미지면 null.
+	 */
+	public static String keyOf(String path) {
+		if (path == null || !path.startsWith(CLOUD_FRONT_DOMAIN_NAME))
+			return null;
+		String key = path.substring(CLOUD_FRONT_DOMAIN_NAME.length());
+		if (key.isEmpty() || key.startsWith("default"))
+			return null;
+		return key;
+	}
 }
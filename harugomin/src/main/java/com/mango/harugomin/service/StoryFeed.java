@@ -0,0 +1,135 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.entity.Post;
+import com.mango.harugomin.domain.repository.PostRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 홈 스토리용 게시중인 고민글 순서. 작성 순으로 정렬한 (created_date, post_id) 키만 메모리에 최대 capacity 개까지 들고 있고,
+ * 앞쪽 글들의 키를 스냅샷으로 만들어 둔다. 조회수, 댓글 수, 작성자 정보는 바뀌므로 글 내용은 조회할 때 id 로 읽는다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class StoryFeed {
+
+	public static final int STORY_SIZE = 10;
+	private static final int SNAPSHOT_SIZE = STORY_SIZE + 3;
+
+	private final PostRepository postRepository;
+
+	@Value("${hago.story.capacity:1000}")
+	private int capacity;
+
+	private final ConcurrentSkipListSet<Key> posts = new ConcurrentSkipListSet<>();
+	private final ConcurrentHashMap<Long, Key> keys = new ConcurrentHashMap<>();
+	private volatile List<Key> snapshot = Collections.emptyList();
+	private volatile boolean truncated = false;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		reload();
+		log.info("Story feed loaded ::: {} posts", posts.size());
+	}
+
+	public void add(Post post) {
+		put(post.getPostId(), post.getCreatedDate());
+		if (posts.size() > capacity) {
+			Key newest = posts.last();
+			posts.remove(newest);
+			keys.remove(newest.postId);
+			truncated = true;
+		}
+		refreshSnapshot();
+	}
+
+	public void remove(Long postId) {
+		removeAll(Collections.singletonList(postId));
+	}
+
+	public void removeAll(Collection<Long> postIds) {
+		for (Long postId : postIds) {
+			Key key = keys.remove(postId);
+			if (key != null)
+				posts.remove(key);
+		}
+		// 메모리에 담지 못한 글이 있었는데 남은 글이 적어지면 DB 에서 다시 채운다.
+		if (truncated && posts.size() < capacity / 2)
+			reload();
+		refreshSnapshot();
+	}
+
+	/**
+	 * 스토리에 보여 줄 글 id. 만료된 글은 PostExpiryService 가 곧 제거하므로 스냅샷에서 건너뛰기만 한다.
+	 */
+	public List<Long> getStory(LocalDateTime now) {
+		List<Long> story = new ArrayList<>();
+		for (Key key : snapshot) {
+			if (PostExpiryQueue.isExpired(key.createdDate, now))
+				continue;
+			story.add(key.postId);
+			if (story.size() >= STORY_SIZE)
+				break;
+		}
+		return story;
+	}
+
+	private synchronized void reload() {
+		List<Object[]> oldest = postRepository.findAllCreatedDatesOrderByCreatedDate(PageRequest.of(0, capacity));
+		for (Object[] row : oldest) {
+			put(((Number) row[0]).longValue(), (LocalDateTime) row[1]);
+		}
+		truncated = oldest.size() >= capacity;
+		refreshSnapshot();
+	}
+
+	private void put(Long postId, LocalDateTime createdDate) {
+		Key key = new Key(createdDate, postId);
+		Key previous = keys.put(postId, key);
+		if (previous != null)
+			posts.remove(previous);
+		posts.add(key);
+	}
+
+	private synchronized void refreshSnapshot() {
+		List<Key> head = new ArrayList<>(SNAPSHOT_SIZE);
+		for (Key key : posts) {
+			if (head.size() >= SNAPSHOT_SIZE)
+				break;
+			head.add(key);
+		}
+		snapshot = Collections.unmodifiableList(head);
+	}
+
+	private static class Key implements Comparable<Key> {
+		private final LocalDateTime createdDate;
+		private final long postId;
+
+		private Key(LocalDateTime createdDate, long postId) {
+			this.createdDate = createdDate;
+			this.postId = postId;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int result = createdDate.compareTo(other.createdDate);
+			if (result != 0)
+				return result;
+			return Long.compare(postId, other.postId);
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.dto.UploadSessionResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 이어 올리기. 세션을 만들면 전체 크기만큼 임시 파일을 미리 잡아 두고, 번호 붙은 조각을 받는 대로 제자리에 쓴다.
+ * 연결이 끊기면 빠진 조각만 다시 보내면 되고, 모든 조각이 오면 commit 으로 기존 저장소(로컬/S3)에 넘긴다.
+ * 세션은 메모리에만 있으므로 서버가 재시작되면 처음부터 다시 올려야 한다.
+ */
+@Slf4j
+@Service
+public class UploadSessionService {
+
+	public static final String POST = "post";
+	public static final String PROFILE = "profile";
+
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final PostImageService postImageService;
+	private final UserService userService;
+	private final Path dir;
+	private final long maxBytes;
+	private final long ttlMillis;
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+	public UploadSessionService(PostImageService postImageService, UserService userService,
+								@Value("${hago.upload.dir:/home/ubuntu/hago/files/uploads/}") String dir,
+								@Value("${hago.upload.max-bytes:20971520}") long maxBytes,
+								@Value("${hago.upload.session-ttl-minutes:30}") long ttlMinutes) {
+		this.postImageService = postImageService;
+		this.userService = userService;
+		this.dir = Paths.get(dir);
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMinutes * 60 * 1000;
+	}
+
+	public ResponseEntity create(String target, Long userId, String fileName, String contentType, long size, int chunkSize) throws IOException {
+		if (!POST.equals(target) && !(PROFILE.equals(target) && userId != null))
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
+		if (size <= 0 || size > maxBytes || chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE)
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
+
+		Files.createDirectories(dir);
+		String uploadId = UUID.randomUUID().toString().replace("-", "");
+		Path file = dir.resolve(uploadId + ".part");
+		try (RandomAccessFile preallocated = new RandomAccessFile(file.toFile(), "rw")) {
+			preallocated.setLength(size);
+		}
+		Session session = new Session(uploadId, target, userId, FilenameUtils.getExtension(fileName), contentType, file, size, chunkSize);
+		sessions.put(uploadId, session);
+		return new ResponseEntity(session.toResponse(), HttpStatus.OK);
+	}
+
+	public ResponseEntity status(String uploadId) {
+		Session session = sessions.get(uploadId);
+		if (session == null)
+			return new ResponseEntity(HttpStatus.NOT_FOUND);
+		return new ResponseEntity(session.toResponse(), HttpStatus.OK);
+	}
+
+	/**
+	 * 조각을 받으면서 MD5 를 계산해 파일의 제자리에 쓴다. 길이나 체크섬이 맞지 않으면 받은 것으로 치지 않는다.
+	 * 이미 받은 조각을 다시 보내면 쓰기 전에 받지 않은 것으로 돌려 두므로, 재전송이 중간에 끊겨 덮어쓴 자리가 그대로 commit 되지 않는다.
+	 * 같은 조각을 동시에 쓰거나 commit 중이면 409 를 돌려준다.
+	 */
+	public ResponseEntity writeChunk(String uploadId, int index, String contentMd5, InputStream body) throws IOException {
+		Session session = sessions.get(uploadId);
+		if (session == null)
+			return new ResponseEntity(HttpStatus.NOT_FOUND);
+		if (index < 0 || index >= session.chunkCount || contentMd5 == null)
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
+
+		long start = (long) index * session.chunkSize;
+		long expected = Math.min(session.chunkSize, session.size - start);
+		FileChannel channel = session.beginChunk(index);
+		if (channel == null)
+			return new ResponseEntity(session.toResponse(), HttpStatus.CONFLICT);
+
+		boolean received = false;
+		try {
+			MessageDigest md5 = md5();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long written = 0;
+			ReadableByteChannel source = Channels.newChannel(body);
+			while (source.read(buffer) >= 0) {
+				buffer.flip();
+				if (written + buffer.remaining() > expected)
+					return new ResponseEntity(HttpStatus.BAD_REQUEST);
+				md5.update(buffer.duplicate());
+				while (buffer.hasRemaining()) {
+					written += channel.write(buffer, start + written);
+				}
+				buffer.clear();
+			}
+			if (written != expected)
+				return new ResponseEntity(HttpStatus.BAD_REQUEST);
+			if (!Base64.getEncoder().encodeToString(md5.digest()).equals(contentMd5.trim()))
+				return new ResponseEntity(HttpStatus.UNPROCESSABLE_ENTITY);
+			received = true;
+		} finally {
+			session.endChunk(index, received);
+		}
+		return new ResponseEntity(session.toResponse(), HttpStatus.OK);
+	}
+
+	public ResponseEntity commit(String uploadId) throws IOException {
+		Session session = sessions.get(uploadId);
+		if (session == null)
+			return new ResponseEntity(HttpStatus.NOT_FOUND);
+		if (!session.beginCommit())
+			return new ResponseEntity(session.toResponse(), HttpStatus.CONFLICT);
+
+		try {
+			session.closeChannel(true);
+			String result;
+			if (POST.equals(session.target)) {
+				result = postImageService.store(session.file, session.extension);
+			} else {
+				result = userService.updateUserProfile(session.userId, session.file, session.contentType);
+			}
+			sessions.remove(uploadId);
+			Files.deleteIfExists(session.file);
+			return new ResponseEntity(result, HttpStatus.OK);
+		} catch (IOException | RuntimeException e) {
+			log.error("Upload commit failed ::: {} {}", uploadId, e.getMessage());
+			session.abortCommit();
+			throw e;
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${hago.upload.expire-interval-ms:60000}")
+	public void expire() {
+		long now = System.currentTimeMillis();
+		Iterator<Session> iterator = sessions.values().iterator();
+		while (iterator.hasNext()) {
+			Session session = iterator.next();
+			if (!session.abandon(now, ttlMillis))
+				continue;
+			iterator.remove();
+			try {
+				session.closeChannel(false);
+				Files.deleteIfExists(session.file);
+			} catch (IOException e) {
+				log.warn("Failed to remove abandoned upload ::: {} {}", session.uploadId, e.getMessage());
+			}
+		}
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Session {
+		private final String uploadId;
+		private final String target;
+		private final Long userId;
+		private final String extension;
+		private final String contentType;
+		private final Path file;
+		private final long size;
+		private final int chunkSize;
+		private final int chunkCount;
+		private final BitSet chunks;
+		private final BitSet writing;
+		private int writers;
+		private FileChannel channel;
+		private volatile long touchedAt;
+		private volatile boolean committing;
+
+		private Session(String uploadId, String target, Long userId, String extension, String contentType, Path file, long size, int chunkSize) {
+			this.uploadId = uploadId;
+			this.target = target;
+			this.userId = userId;
+			this.extension = extension;
+			this.contentType = contentType;
+			this.file = file;
+			this.size = size;
+			this.chunkSize = chunkSize;
+			this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+			this.chunks = new BitSet(chunkCount);
+			this.writing = new BitSet(chunkCount);
+			this.touchedAt = System.currentTimeMillis();
+		}
+
+		/**
+		 * 조각 쓰기는 위치 지정 쓰기라 여러 조각이 동시에 와도 채널 하나를 같이 쓴다.
+		 * commit 중이거나 같은 조각을 이미 쓰고 있으면 null. 쓰는 동안 그 조각은 받지 않은 것으로 둔다.
+		 */
+		private synchronized FileChannel beginChunk(int index) throws IOException {
+			touchedAt = System.currentTimeMillis();
+			if (committing || writing.get(index))
+				return null;
+			if (channel == null)
+				channel = FileChannel.open(file, StandardOpenOption.WRITE);
+			writing.set(index);
+			chunks.clear(index);
+			writers++;
+			return channel;
+		}
+
+		private synchronized void endChunk(int index, boolean received) {
+			touchedAt = System.currentTimeMillis();
+			writing.clear(index);
+			writers--;
+			if (received)
+				chunks.set(index);
+		}
+
+		private synchronized void closeChannel(boolean force) throws IOException {
+			if (channel == null)
+				return;
+			if (force)
+				channel.force(false);
+			channel.close();
+			channel = null;
+		}
+
+		/**
+		 * 쓰고 있는 조각이 있으면 채널을 닫지 않도록 commit 을 시작하지 않는다.
+		 */
+		private synchronized boolean beginCommit() {
+			touchedAt = System.currentTimeMillis();
+			if (committing || writers > 0 || chunks.cardinality() < chunkCount)
+				return false;
+			committing = true;
+			return true;
+		}
+
+		private synchronized void abortCommit() {
+			committing = false;
+		}
+
+		/**
+		 * 오래 쓰이지 않은 세션이면 더 이상 조각을 받지 않도록 막고 true.
+		 */
+		private synchronized boolean abandon(long now, long ttlMillis) {
+			if (now - touchedAt <= ttlMillis || committing || writers > 0)
+				return false;
+			committing = true;
+			return true;
+		}
+
+		private synchronized UploadSessionResponseDto toResponse() {
+			List<Integer> missing = new ArrayList<>();
+			for (int index = chunks.nextClearBit(0); index < chunkCount; index = chunks.nextClearBit(index + 1)) {
+				missing.add(index);
+			}
+			return new UploadSessionResponseDto(uploadId, size, chunkSize, chunkCount, missing);
+		}
+	}
+}
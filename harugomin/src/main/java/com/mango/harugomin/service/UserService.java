@@ -3,6 +3,10 @@ package com.mango.harugomin.service;
 import com.google.gson.JsonObject;
 import com.mango.harugomin.domain.entity.*;
 import com.mango.harugomin.domain.repository.*;
+import com.mango.harugomin.dto.CursorResponseDto;
+import com.mango.harugomin.dto.HistoryResponseDto;
+import com.mango.harugomin.dto.KeysetCursor;
+import com.mango.harugomin.dto.SliceResponseDto;
 import com.mango.harugomin.dto.UserResponseDto;
 import com.mango.harugomin.dto.UserSignUpRequestDto;
 import com.mango.harugomin.dto.UserTokenResponseDto;
@@ -10,8 +14,11 @@ import com.mango.harugomin.dto.UserUpdateRequestDto;
 import com.mango.harugomin.jwt.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,8 +27,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -31,11 +42,19 @@ public class UserService {
 
 	private final JwtService jwtService;
 	private final S3Service s3Service;
+	private final ImageVariantService imageVariantService;
+	private final S3ObjectCleanupService s3ObjectCleanupService;
+	private final PostRanking postRanking;
+	private final PostService postService;
+	private final PostDetailCache postDetailCache;
+	private final HistoryService historyService;
+	private final LikedCommentCache likedCommentCache;
+	private final CommentPageCache commentPageCache;
+	private final BestCommentIndex bestCommentIndex;
 
 	private final TokenRepository tokenRepository;
 	private final HashtagRepository hashtagRepository;
 	private final CommentRepository commentRepository;
-	private final HistoryRepository historyRepository;
 	private final LikerRepository likerRepository;
 	private final UserHashtagRepository userHashtagRepository;
 	private final PostRepository postRepository;
@@ -160,11 +179,43 @@ public class UserService {
 	@Transactional
 	public String updateUserProfile(Long userId, MultipartFile file) throws IOException {
 		User user = userRepository.findById(userId).get();
-		String imgPath = S3Service.CLOUD_FRONT_DOMAIN_NAME + s3Service.upload(user.getProfileImage(), file);
+		String fileName = s3Service.upload(file);
+		return applyProfileImage(user, fileName, file);
+	}
+
+	/**
+	 * 이어 올리기(UploadSessionService)로 조립된 파일을 프로필 사진으로 올린다.
+	 */
+	@Transactional
+	public String updateUserProfile(Long userId, Path file, String contentType) throws IOException {
+		User user = userRepository.findById(userId).get();
+		String fileName;
+		try (InputStream in = Files.newInputStream(file)) {
+			fileName = s3Service.upload(in, Files.size(file), contentType);
+		}
+		return applyProfileImage(user, fileName, new FileSystemResource(file));
+	}
+
+	/**
+	 * original 은 요청이 끝나면 사라질 수 있으므로 디코딩 가능한지 확인하는 데만 쓰고, 변형 이미지는 S3 에 올라간 원본으로 만든다.
+	 */
+	private String applyProfileImage(User user, String fileName, InputStreamSource original) {
+		String imgPath = S3Service.CLOUD_FRONT_DOMAIN_NAME + fileName;
+		s3ObjectCleanupService.enqueue(user.getProfileImage());
 		user.updateUserImage(imgPath);
 		userRepository.save(user);
+		postDetailCache.evictUser(user.getUserId());
+		// 변형 이미지는 S3 에 올라간 원본을 로컬 캐시를 거쳐 읽어 만든다.
+		boolean generated = imageVariantService.isSupported(original)
+			&& imageVariantService.submit(fileName, () -> s3Service.read(fileName), s3Service::uploadVariant);
+
+		JsonObject variantPaths = new JsonObject();
+		for (Map.Entry<String, String> variant : ImageVariantService.variantKeys(fileName, generated).entrySet()) {
+			variantPaths.addProperty(variant.getKey(), S3Service.CLOUD_FRONT_DOMAIN_NAME + variant.getValue());
+		}
 		JsonObject data = new JsonObject();
 		data.addProperty("imgPath", imgPath);
+		data.add("variants", variantPaths);
 		data.addProperty("status", String.valueOf(HttpStatus.OK));
 
 		return data.toString();
@@ -181,13 +232,18 @@ public class UserService {
 
 	@Transactional
 	public void updateUser(User user, UserUpdateRequestDto requestDto) {
+		String currentProfileImage = user.getProfileImage();
+		if (currentProfileImage != null && !currentProfileImage.equals(requestDto.getProfileImage()))
+			s3ObjectCleanupService.enqueue(currentProfileImage);
 		user.updateUserInfo(requestDto);
+		postDetailCache.evictUser(user.getUserId());
 		updateUserHashtag(user, requestDto.getUserHashtags());
 	}
 
 	@Transactional
 	public void updateUserHashtag(User user, List<String> hashtags) {
 		user.initHashtagInfo();
+		postRanking.evictInterests(user.getUserId());
 
 		if(hashtags == null || hashtags.size() < 1)
 			return;
@@ -211,31 +267,69 @@ public class UserService {
 
 	@Transactional
 	public ResponseEntity<Long> deleteUser(Long userId) {
+		findById(userId).ifPresent(user -> s3ObjectCleanupService.enqueue(user.getProfileImage()));
 		postRepository.foreignkeyOpen();
-		historyRepository.deleteAllByUsers(userId);
+		historyService.deleteAllByUser(userId);
 		commentRepository.deleteAllByUserId(userId);
 		likerRepository.deleteAllbyUserId(userId);
+		likedCommentCache.evict(userId);
+		commentPageCache.clear();
+		bestCommentIndex.clear();
 		userHashtagRepository.deleteAllByUserId(userId);
+		List<Long> postIds = postRepository.findPostIdsByUserId(userId);
 		postRepository.deleteAllByUserUserId(userId);
+		postService.evictDeletedPosts(postIds);
+		postDetailCache.evictUser(userId);
 		deleteById(userId);
 		tokenRepository.delete(tokenRepository.findById(userId).get());
 		postRepository.foreignkeyClose();
+		postRanking.evictInterests(userId);
 		return new ResponseEntity<>(HttpStatus.OK);
 	}
 
 	public ResponseEntity userAnnouncingPosts(Long userId, int pageNum) {
 		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
-		Page<Post> result = postRepository.findAllByUserUserId(userId, pageRequest);
-		if (result.isEmpty())
+		Slice<Post> result = postRepository.findSliceByUserUserId(userId, pageRequest);
+		if (!result.hasContent())
 			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
 		return new ResponseEntity(result.getContent(), HttpStatus.OK);
 	}
 
-	public ResponseEntity userHistoryPosts(Long userId, int pageNum) {
+	public ResponseEntity userAnnouncingPostsSlice(Long userId, int pageNum) {
 		PageRequest pageRequest = PageRequest.of(pageNum, 15, Sort.by("createdDate").descending());
-		Page<History> result = historyRepository.findAllByUserUserId(userId, pageRequest);
-		if (result.isEmpty())
+		return new ResponseEntity(new SliceResponseDto<>(postRepository.findSliceByUserUserId(userId, pageRequest)), HttpStatus.OK);
+	}
+
+	public ResponseEntity userHistoryPosts(Long userId, int pageNum) {
+		SliceResponseDto<HistoryResponseDto> result = historyService.findSliceByUser(userId, pageNum, 15);
+		if (result.getContent().isEmpty())
 			return new ResponseEntity(Collections.EMPTY_LIST, HttpStatus.OK);
 		return new ResponseEntity<>(result.getContent(), HttpStatus.OK);
 	}
+
+	public ResponseEntity userHistoryPostsSlice(Long userId, int pageNum) {
+		return new ResponseEntity(historyService.findSliceByUser(userId, pageNum, 15), HttpStatus.OK);
+	}
+
+	public ResponseEntity userAnnouncingPostsByCursor(Long userId, String cursor) {
+		KeysetCursor keysetCursor = null;
+		try {
+			keysetCursor = KeysetCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
+		}
+		List<Post> rows = postRepository.findAllByUserUserIdBefore(userId, keysetCursor.getCreatedDate(), keysetCursor.getId(), PageRequest.of(0, 15 + 1));
+		return new ResponseEntity(CursorResponseDto.of(rows, 15, post -> new KeysetCursor(post.getCreatedDate(), post.getPostId())), HttpStatus.OK);
+	}
+
+	public ResponseEntity userHistoryPostsByCursor(Long userId, String cursor) {
+		KeysetCursor keysetCursor = null;
+		try {
+			keysetCursor = KeysetCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity(HttpStatus.BAD_REQUEST);
+		}
+		List<HistoryResponseDto> rows = historyService.findByUserBefore(userId, keysetCursor.getCreatedDate(), keysetCursor.getId(), 15 + 1);
+		return new ResponseEntity(CursorResponseDto.of(rows, 15, history -> new KeysetCursor(history.getCreatedDate(), history.getPostId())), HttpStatus.OK);
+	}
 }
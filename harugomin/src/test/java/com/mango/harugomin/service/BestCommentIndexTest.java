@@ -0,0 +1,122 @@
+package com.mango.harugomin.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BestCommentIndexTest {
+
+    private BestCommentIndex index;
+
+    @Before
+    public void setUp() {
+        index = new BestCommentIndex(2, 10);
+        Map<Long, Integer> likes = new HashMap<>();
+        likes.put(1L, 5);
+        likes.put(2L, 3);
+        likes.put(3L, 4);
+        likes.put(4L, 0);
+        index.put(100L, likes, index.version(100L));
+    }
+
+    @Test
+    public void 좋아요_많은_순으로_상위_댓글() {
+        assertThat(ids(index.top(100L))).containsExactly(1L, 3L);
+        assertThat(index.top(200L)).isNull();
+    }
+
+    @Test
+    public void 좋아요가_늘면_순위에_들어온다() {
+        index.like(100L, 2L, 1);
+        index.like(100L, 2L, 1);
+        // 좋아요 수가 같으면 먼저 쓴 댓글이 앞선다
+        assertThat(ids(index.top(100L))).containsExactly(1L, 2L);
+
+        index.like(100L, 2L, 1);
+        assertThat(ids(index.top(100L))).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void 상위_댓글의_좋아요가_줄면_밖의_댓글과_다시_비교한다() {
+        index.like(100L, 3L, -1);
+        index.like(100L, 3L, -1);
+
+        assertThat(ids(index.top(100L))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void 삭제된_댓글은_빠지고_다음_댓글이_채운다() {
+        index.remove(100L, 1L);
+
+        assertThat(ids(index.top(100L))).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void 새_댓글은_좋아요가_생겨야_보인다() {
+        index.remove(100L, 1L);
+        index.remove(100L, 2L);
+        index.add(100L, 5L);
+        assertThat(ids(index.top(100L))).containsExactly(3L);
+
+        index.like(100L, 5L, 1);
+        assertThat(ids(index.top(100L))).containsExactly(3L, 5L);
+    }
+
+    @Test
+    public void 조회중_변경이_있으면_올리지_않는다() {
+        long version = index.version(200L);
+        index.add(200L, 7L);
+        index.put(200L, new HashMap<>(), version);
+
+        assertThat(index.top(200L)).isNull();
+    }
+
+    @Test
+    public void 다른_글의_변경은_올리기를_막지_않는다() {
+        long version = index.version(200L);
+        index.like(100L, 1L, 1);
+        Map<Long, Integer> likes = new HashMap<>();
+        likes.put(7L, 1);
+        index.put(200L, likes, version);
+
+        assertThat(ids(index.top(200L))).containsExactly(7L);
+    }
+
+    @Test
+    public void 커밋을_기다리는_좋아요가_있으면_올리지_않고_커밋_뒤에_반영한다() {
+        Map<Long, Integer> likes = new HashMap<>();
+        likes.put(7L, 1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.like(200L, 7L, 1);
+            index.put(200L, likes, index.version(200L));
+            assertThat(index.top(200L)).isNull();
+
+            index.like(100L, 2L, 3);
+            assertThat(ids(index.top(100L))).containsExactly(1L, 3L);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(ids(index.top(100L))).containsExactly(2L, 1L);
+        index.put(200L, likes, index.version(200L));
+        assertThat(ids(index.top(200L))).containsExactly(7L);
+    }
+
+    private static List<Long> ids(List<BestCommentIndex.Ranked> ranked) {
+        return ranked.stream().map(BestCommentIndex.Ranked::getCommentId).collect(Collectors.toList());
+    }
+}
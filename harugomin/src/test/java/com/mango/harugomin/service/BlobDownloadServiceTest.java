@@ -0,0 +1,39 @@
+package com.mango.harugomin.service;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlobDownloadServiceTest {
+
+    @Test
+    public void 시작과_끝이_있는_범위() {
+        assertThat(BlobDownloadService.parseRange("bytes=0-99", 1000)).containsExactly(0L, 99L);
+        // 끝이 파일 크기를 넘으면 마지막 바이트까지
+        assertThat(BlobDownloadService.parseRange("bytes=900-2000", 1000)).containsExactly(900L, 999L);
+    }
+
+    @Test
+    public void 열린_범위와_suffix_범위() {
+        assertThat(BlobDownloadService.parseRange("bytes=500-", 1000)).containsExactly(500L, 999L);
+        assertThat(BlobDownloadService.parseRange("bytes=-100", 1000)).containsExactly(900L, 999L);
+        assertThat(BlobDownloadService.parseRange("bytes=-5000", 1000)).containsExactly(0L, 999L);
+    }
+
+    @Test
+    public void 시작이_파일_끝을_넘는_범위는_416() {
+        assertThat(BlobDownloadService.parseRange("bytes=1000-", 1000)).isNull();
+        assertThat(BlobDownloadService.parseRange("bytes=1500-2000", 1000)).isNull();
+        assertThat(BlobDownloadService.parseRange("bytes=0-10", 0)).isNull();
+    }
+
+    @Test
+    public void 지원하지_않거나_잘못된_범위는_무시하고_전체() {
+        assertThat(BlobDownloadService.parseRange("bytes=0-10,20-30", 1000)).isSameAs(BlobDownloadService.WHOLE);
+        assertThat(BlobDownloadService.parseRange("items=0-10", 1000)).isSameAs(BlobDownloadService.WHOLE);
+        assertThat(BlobDownloadService.parseRange("bytes=50-10", 1000)).isSameAs(BlobDownloadService.WHOLE);
+        assertThat(BlobDownloadService.parseRange("bytes=-", 1000)).isSameAs(BlobDownloadService.WHOLE);
+        assertThat(BlobDownloadService.parseRange("bytes=-0", 1000)).isSameAs(BlobDownloadService.WHOLE);
+        assertThat(BlobDownloadService.parseRange("bytes=99999999999999999999-", 1000)).isSameAs(BlobDownloadService.WHOLE);
+    }
+}
@@ -0,0 +1,60 @@
+package com.mango.harugomin.service;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeltaBufferTest {
+
+    @Test
+    public void 꺼내는_도중_들어온_증가분도_빠지지_않는다() throws Exception {
+        DeltaBuffer buffer = new DeltaBuffer();
+        int threads = 4;
+        int perThread = 100000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    buffer.add(1L, 1);
+                }
+                done.countDown();
+            });
+        }
+
+        long total = 0;
+        while (done.getCount() > 0) {
+            total += buffer.drain(1L);
+            for (Map.Entry<Long, Long> entry : buffer.drain().entrySet()) {
+                total += entry.getValue();
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        total += buffer.drain(1L);
+
+        assertThat(total).isEqualTo((long) threads * perThread);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    public void 같은_증감값끼리_묶는다() {
+        DeltaBuffer buffer = new DeltaBuffer();
+        buffer.add(1L, 2);
+        buffer.add(2L, 2);
+        buffer.add(3L, 5);
+
+        Map<Long, List<Long>> groups = DeltaBuffer.groupByDelta(buffer.drain());
+
+        assertThat(groups.get(2L)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(groups.get(5L)).containsExactly(3L);
+        assertThat(buffer.pending(1L)).isZero();
+    }
+}
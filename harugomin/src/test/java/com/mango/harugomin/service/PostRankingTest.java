@@ -0,0 +1,72 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.repository.PostRepository;
+import com.mango.harugomin.domain.repository.UserHashtagRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PostRankingTest {
+
+    private UserHashtagRepository userHashtagRepository;
+    private PostRanking postRanking;
+
+    @Before
+    public void setUp() {
+        PostRepository postRepository = mock(PostRepository.class);
+        userHashtagRepository = mock(UserHashtagRepository.class);
+        when(postRepository.findAllRankings()).thenReturn(Arrays.asList(
+                new Object[]{1L, "연애", 10},
+                new Object[]{2L, "돈", 50},
+                new Object[]{3L, "연애", 30},
+                new Object[]{4L, "취업", 40},
+                new Object[]{5L, "애", 100}
+        ));
+        postRanking = new PostRanking(postRepository, userHashtagRepository);
+        postRanking.load();
+    }
+
+    @Test
+    public void 비로그인_사용자는_전체_인기글() {
+        assertThat(postRanking.selectMainPosts(null, 3)).containsExactly(5L, 2L, 4L);
+        assertThat(postRanking.selectMainPosts(-1L, 3)).containsExactly(5L, 2L, 4L);
+    }
+
+    @Test
+    public void 관심_해시태그_글을_우선으로_선정() {
+        when(userHashtagRepository.findTagNamesByUserId(7L)).thenReturn(Collections.singletonList("연애"));
+
+        // "애" 태그 글은 "연애" 에 부분 문자열로 포함되지만 관심 태그가 아니다
+        assertThat(postRanking.selectMainPosts(7L, 3)).containsExactly(3L, 1L, 5L);
+    }
+
+    @Test
+    public void 해시태그가_없는_사용자는_전체_인기글() {
+        when(userHashtagRepository.findTagNamesByUserId(8L)).thenReturn(Collections.emptyList());
+
+        assertThat(postRanking.selectMainPosts(8L, 3)).containsExactly(5L, 2L, 4L);
+    }
+
+    @Test
+    public void 조회수와_보관함_이동_반영() {
+        postRanking.addHits(1L, 100);
+        postRanking.removeAll(Collections.singletonList(5L));
+
+        assertThat(postRanking.selectMainPosts(null, 3)).containsExactly(1L, 2L, 4L);
+    }
+
+    @Test
+    public void 상위_글이_빠지면_남은_글에서_다시_고른다() {
+        when(userHashtagRepository.findTagNamesByUserId(7L)).thenReturn(Collections.singletonList("연애"));
+        postRanking.remove(3L);
+
+        assertThat(postRanking.selectMainPosts(7L, 2)).containsExactly(1L, 5L);
+    }
+
+}
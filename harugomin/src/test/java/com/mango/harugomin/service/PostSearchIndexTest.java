@@ -0,0 +1,69 @@
+package com.mango.harugomin.service;
+
+import com.mango.harugomin.domain.repository.PostRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class PostSearchIndexTest {
+
+    private PostSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PostSearchIndex(mock(PostRepository.class));
+        LocalDateTime now = LocalDateTime.now();
+        index.index(1L, "연애 고민", "남자친구와 자주 싸워요", now.minusHours(3));
+        index.index(2L, "취업 준비", "연애는 나중에 하고 싶어요", now.minusHours(2));
+        index.index(3L, "돈 관리", "월급을 어떻게 모아야 할까요", now.minusHours(1));
+    }
+
+    @Test
+    public void 한글_부분_검색() {
+        PostSearchIndex.SearchResult result = index.search("연애", 0, 15);
+
+        // 제목에 포함된 글이 내용에만 포함된 글보다 앞에 온다
+        assertThat(result.getPostIds()).containsExactly(1L, 2L);
+        assertThat(result.getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    public void 모든_gram_을_포함해야_검색된다() {
+        assertThat(index.search("남자친구", 0, 15).getPostIds()).containsExactly(1L);
+        assertThat(index.search("남자사람", 0, 15).getPostIds()).isEmpty();
+    }
+
+    @Test
+    public void 한글자_검색() {
+        assertThat(index.search("돈", 0, 15).getPostIds()).containsExactly(3L);
+    }
+
+    @Test
+    public void 여러_단어_검색어의_한글자_단어도_부분_검색한다() {
+        index.index(4L, "용돈 고민", "용돈을 어떻게 관리해야 할까요", LocalDateTime.now());
+
+        assertThat(index.search("돈 관리", 0, 15).getPostIds()).containsExactlyInAnyOrder(3L, 4L);
+        assertThat(index.search("돈 싸워요", 0, 15).getPostIds()).isEmpty();
+    }
+
+    @Test
+    public void 수정_삭제_반영() {
+        index.index(1L, "이직 고민", "회사를 옮겨야 할까요", LocalDateTime.now());
+        assertThat(index.search("연애", 0, 15).getPostIds()).containsExactly(2L);
+
+        index.remove(2L);
+        assertThat(index.search("연애", 0, 15).getPostIds()).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void 페이징() {
+        assertThat(index.search("요", 0, 2).getPostIds()).hasSize(2);
+        assertThat(index.search("요", 2, 2).getPostIds()).hasSize(1);
+        assertThat(index.search("요", 2, 2).getTotal()).isEqualTo(3);
+    }
+}
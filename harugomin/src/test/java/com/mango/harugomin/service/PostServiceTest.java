@@ -1,5 +1,11 @@
 package com.mango.harugomin.service;
 
+import com.mango.harugomin.domain.entity.Comment;
+import com.mango.harugomin.domain.entity.Post;
+import com.mango.harugomin.domain.entity.User;
+import com.mango.harugomin.domain.repository.CommentRepository;
+import com.mango.harugomin.domain.repository.PostRepository;
+import com.mango.harugomin.domain.repository.UserRepository;
 import junit.framework.TestCase;
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
@@ -20,6 +26,49 @@ public class PostServiceTest extends TestCase {
     @Autowired
     PostService postService;
 
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Test
+    public void 댓글있는_게시글_삭제() {
+        // given
+        User user = userRepository.save(User.builder()
+                .userLoginId("tester")
+                .password("...")
+                .nickname("tester")
+                .profileImage("...")
+                .ageRange(20)
+                .build());
+        Post post = postRepository.save(Post.builder()
+                .user(user)
+                .title("title")
+                .content("content")
+                .tagName("연애")
+                .build());
+        Comment comment = commentRepository.save(Comment.builder()
+                .userId(user.getUserId())
+                .nickname(user.getNickname())
+                .profileImage(user.getProfileImage())
+                .post(post)
+                .content("comment")
+                .build());
+        commentRepository.flush();
+
+        // when
+        postService.deletePost(post.getPostId());
+        postRepository.flush();
+
+        // then
+        Assertions.assertThat(postRepository.findById(post.getPostId())).isEmpty();
+        Assertions.assertThat(commentRepository.findById(comment.getCommentId())).isEmpty();
+    }
+
 //    @Test
 //    public void testFindAllPosts() {
 //        Pageable pageable = PageRequest.of(0, 5, Sort.Direction.DESC, "hits");
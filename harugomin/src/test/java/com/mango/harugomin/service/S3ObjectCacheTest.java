@@ -0,0 +1,128 @@
+package com.mango.harugomin.service;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class S3ObjectCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 로컬 버킷 대용
+    private final Map<String, String> bucket = new HashMap<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private S3ObjectCache.Fetcher fetcher = (key, currentEtag, target) -> {
+        fetches.incrementAndGet();
+        String content = bucket.get(key);
+        if (content == null)
+            throw new IOException("no such key " + key);
+        String etag = Integer.toHexString(content.hashCode());
+        if (etag.equals(currentEtag))
+            return null;
+        Files.write(target, content.getBytes(StandardCharsets.UTF_8));
+        return etag;
+    };
+
+    @Before
+    public void setUp() {
+        bucket.put("a", "aaaaaaaaaa");
+        bucket.put("b", "bbbbbbbbbb");
+        bucket.put("c", "cccccccccc");
+    }
+
+    @Test
+    public void 두번째_읽기는_디스크에서() throws Exception {
+        S3ObjectCache cache = new S3ObjectCache(folder.getRoot().toPath(), 1024, 60_000, fetcher);
+
+        assertThat(read(cache, "a")).isEqualTo("aaaaaaaaaa");
+        assertThat(read(cache, "a")).isEqualTo("aaaaaaaaaa");
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void 크기를_넘으면_오래_안_읽은_것부터_버린다() throws Exception {
+        S3ObjectCache cache = new S3ObjectCache(folder.getRoot().toPath(), 25, 60_000, fetcher);
+
+        read(cache, "a");
+        read(cache, "b");
+        read(cache, "a");
+        read(cache, "c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.bytes()).isEqualTo(20);
+        read(cache, "a");
+        assertThat(fetches.get()).isEqualTo(3);
+        read(cache, "b");
+        assertThat(fetches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void 재검증시_바뀌지_않았으면_다시_받지_않는다() throws Exception {
+        S3ObjectCache cache = new S3ObjectCache(folder.getRoot().toPath(), 1024, 0, fetcher);
+
+        read(cache, "a");
+        Thread.sleep(5);
+        assertThat(read(cache, "a")).isEqualTo("aaaaaaaaaa");
+
+        bucket.put("a", "changed");
+        Thread.sleep(5);
+        assertThat(read(cache, "a")).isEqualTo("changed");
+        assertThat(cache.bytes()).isEqualTo(7);
+    }
+
+    @Test
+    public void 동시에_읽어도_한번만_받는다() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        S3ObjectCache.Fetcher slow = (key, currentEtag, target) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fetcher.fetch(key, currentEtag, target);
+        };
+        S3ObjectCache cache = new S3ObjectCache(folder.getRoot().toPath(), 1024, 60_000, slow);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> read(cache, "a")));
+        }
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("aaaaaaaaaa");
+        }
+        executor.shutdown();
+
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    private String read(S3ObjectCache cache, String key) throws IOException {
+        try (InputStream in = cache.read(key)) {
+            byte[] buffer = new byte[64];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}